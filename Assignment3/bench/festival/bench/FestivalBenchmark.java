@@ -0,0 +1,205 @@
+package festival.bench;
+
+import java.io.*;
+import java.util.*;
+
+import festival.*;
+
+/**
+ * <p>
+ * Benchmarks for the core festival classes, run on synthetic festivals of
+ * increasing size.
+ * </p>
+ * 
+ * <p>
+ * For each festival size, each operation is warmed up and then timed over a
+ * number of rounds, and the mean time per operation is reported, so that the
+ * way each operation scales with the size of the festival can be read off the
+ * table of results. Operations that remember earlier results are reported
+ * both cold (with fresh state each round) and warm. Run it with a fixed heap,
+ * e.g.
+ * 
+ * java -Xms1g -Xmx1g festival.bench.FestivalBenchmark
+ * </p>
+ */
+public class FestivalBenchmark {
+
+	// the number of warm-up rounds and timed rounds of each operation
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int TIMED_ROUNDS = 10;
+	// the number of operations performed by each round of a query benchmark
+	private static final int QUERIES = 10000;
+
+	// the sizes of the festivals: venues, sessions, services, events
+	private static final int[][] SIZES = { { 10, 10, 100, 100 },
+			{ 50, 50, 2500, 2000 }, { 100, 100, 10000, 8000 },
+			{ 200, 200, 40000, 32000 } };
+
+	// prevents the JIT from eliminating the work being timed
+	private static long sink;
+
+	/**
+	 * Runs every benchmark on every festival size, and prints a table of the
+	 * mean nanoseconds per operation.
+	 */
+	public static void main(String[] args) throws Exception {
+		System.out.printf("%-34s %7s %8s %8s %8s %14s%n", "benchmark",
+				"venues", "sessions", "services", "events", "ns/op");
+		for (int[] size : SIZES) {
+			run(new SyntheticFestival(size[0], size[1], size[2], size[3], 42));
+		}
+		System.out.println("(checksum " + sink + ")");
+	}
+
+	/**
+	 * Runs every benchmark on the given festival.
+	 */
+	private static void run(SyntheticFestival festival) throws Exception {
+		Random random = new Random(7);
+		List<Venue> venues = festival.getVenues();
+		List<Event> events = festival.getEvents();
+		ShuttleTimetable timetable = festival.getTimetable();
+		int sessions = festival.getSessions();
+
+		// pairs of events (ordered by session) to query reachability between
+		Event[][] pairs = new Event[QUERIES][];
+		for (int i = 0; i < QUERIES; i++) {
+			Event a = events.get(random.nextInt(events.size()));
+			Event b = events.get(random.nextInt(events.size()));
+			pairs[i] = a.getSession() <= b.getSession() ? new Event[] { a, b }
+					: new Event[] { b, a };
+		}
+		// plans of events ordered by session, to check for compatibility
+		List<List<Event>> plans = new ArrayList<>();
+		for (int i = 0; i < QUERIES / 10; i++) {
+			List<Event> plan = new ArrayList<>();
+			for (int j = 0; j < 5; j++) {
+				plan.add(events.get(random.nextInt(events.size())));
+			}
+			plan.sort((a, b) -> a.getSession() - b.getSession());
+			plans.add(plan);
+		}
+
+		/*
+		 * A planner remembers the earliest arrivals from each source it has
+		 * been queried from, so the cold rows use a fresh planner for each
+		 * round (and include the cost of creating it), and the warm rows reuse
+		 * one planner, so that after the first round every query is answered
+		 * from what it remembers.
+		 */
+		report(festival, "DayPlanner.canReach (cold)", QUERIES, () -> {
+			DayPlanner fresh = new DayPlanner(timetable);
+			for (Event[] pair : pairs) {
+				sink += fresh.canReach(pair[0], pair[1]) ? 1 : 0;
+			}
+		});
+		DayPlanner planner = new DayPlanner(timetable);
+		report(festival, "DayPlanner.canReach (warm)", QUERIES, () -> {
+			for (Event[] pair : pairs) {
+				sink += planner.canReach(pair[0], pair[1]) ? 1 : 0;
+			}
+		});
+		DayPlanner precomputed = new DayPlanner(timetable, true);
+		report(festival, "DayPlanner.canReach (precomputed)", QUERIES, () -> {
+			for (Event[] pair : pairs) {
+				sink += precomputed.canReach(pair[0], pair[1]) ? 1 : 0;
+			}
+		});
+		report(festival, "DayPlanner.compatible (cold)", plans.size(), () -> {
+			DayPlanner fresh = new DayPlanner(timetable);
+			for (List<Event> plan : plans) {
+				sink += fresh.compatible(plan) ? 1 : 0;
+			}
+		});
+		report(festival, "DayPlanner.compatible (warm)", plans.size(), () -> {
+			for (List<Event> plan : plans) {
+				sink += planner.compatible(plan) ? 1 : 0;
+			}
+		});
+		report(festival, "ShuttleTimetable.getDestinations", QUERIES, () -> {
+			for (int i = 0; i < QUERIES; i++) {
+				sink += timetable.getDestinations(venues.get(i % venues.size()),
+						1 + i % sessions).size();
+			}
+		});
+		report(festival, "LineUp.addEvent", events.size(), () -> {
+			LineUp lineUp = new LineUp();
+			for (Event event : events) {
+				lineUp.addEvent(event);
+			}
+			sink += lineUp.getLastUsedSession();
+		});
+		LineUp lineUp = festival.getLineUp();
+		report(festival, "LineUp.getEvents(Venue)", venues.size(), () -> {
+			for (Venue venue : venues) {
+				sink += lineUp.getEvents(venue).size();
+			}
+		});
+		report(festival, "LineUp.getEvents(int)", sessions, () -> {
+			for (int t = 1; t <= sessions; t++) {
+				sink += lineUp.getEvents(t).size();
+			}
+		});
+
+		File lineUpFile = File.createTempFile("lineUp", ".txt");
+		File timetableFile = File.createTempFile("timetable", ".txt");
+		File snapshotFile = File.createTempFile("festival", ".snapshot");
+		try {
+			festival.writeLineUp(lineUpFile);
+			festival.writeTimetable(timetableFile);
+			new FestivalSnapshot(lineUp, timetable).write(snapshotFile
+					.getPath());
+			report(festival, "LineUpReader.read", 1, () -> {
+				sink += LineUpReader.read(lineUpFile.getPath())
+						.getLastUsedSession();
+			});
+			report(festival, "LineUpReader.readFast", 1, () -> {
+				sink += LineUpReader.readFast(lineUpFile.getPath())
+						.getLastUsedSession();
+			});
+			report(festival, "LineUpReader.readParallel", 1, () -> {
+				sink += LineUpReader.readParallel(lineUpFile.getPath())
+						.getLastUsedSession();
+			});
+			report(festival, "ScheduleReader.read", 1, () -> {
+				sink += ScheduleReader.read(timetableFile.getPath()).size();
+			});
+			report(festival, "FestivalSnapshot.load", 1, () -> {
+				sink += FestivalSnapshot.load(snapshotFile.getPath())
+						.getTimetable().size();
+			});
+		} finally {
+			lineUpFile.delete();
+			timetableFile.delete();
+			snapshotFile.delete();
+		}
+	}
+
+	/**
+	 * A round of a benchmark.
+	 */
+	private interface Round {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Warms up and then times the given round, and prints the mean time per
+	 * operation, where each round performs the given number of operations.
+	 */
+	private static void report(SyntheticFestival festival, String name,
+			int operations, Round round) throws Exception {
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			round.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < TIMED_ROUNDS; i++) {
+			round.run();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%-34s %7d %8d %8d %8d %14.1f%n", name, festival
+				.getVenues().size(), festival.getSessions(), festival
+				.getTimetable().size(), festival.getEvents().size(),
+				(double) elapsed / TIMED_ROUNDS / Math.max(1, operations));
+	}
+
+}
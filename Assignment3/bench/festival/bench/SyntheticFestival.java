@@ -0,0 +1,134 @@
+package festival.bench;
+
+import java.io.*;
+import java.util.*;
+
+import festival.*;
+
+/**
+ * A randomly generated festival, used as input to the benchmarks.
+ * 
+ * The festival has a given number of venues and sessions, a shuttle timetable
+ * with (about) a given number of services, and a line-up with (about) a given
+ * number of events. The same parameters and seed always give the same
+ * festival.
+ */
+public class SyntheticFestival {
+
+	// the venues of the festival
+	private List<Venue> venues;
+	// the number of sessions in the festival
+	private int sessions;
+	// the shuttle timetable of the festival
+	private ShuttleTimetable timetable;
+	// the line-up of the festival
+	private LineUp lineUp;
+	// the events of the line-up, in the order they were generated
+	private List<Event> events;
+
+	/**
+	 * Generates a new festival.
+	 * 
+	 * @require venueCount > 1 && sessions > 0 && services >= 0 && events >= 0
+	 * @ensure Creates a festival with venueCount venues and the given number
+	 *         of sessions, and at most the given number of services and
+	 *         events (duplicate services and clashing events are skipped).
+	 */
+	public SyntheticFestival(int venueCount, int sessions, int services,
+			int events, long seed) {
+		Random random = new Random(seed);
+		this.sessions = sessions;
+		venues = new ArrayList<>();
+		for (int i = 0; i < venueCount; i++) {
+			venues.add(new Venue("v" + i));
+		}
+		timetable = new ShuttleTimetable();
+		for (int i = 0; i < services; i++) {
+			Venue source = venues.get(random.nextInt(venueCount));
+			Venue destination = venues.get(random.nextInt(venueCount));
+			if (!source.equals(destination)) {
+				timetable.addService(new Service(source, destination, 1 + random
+						.nextInt(sessions)));
+			}
+		}
+		lineUp = new LineUp();
+		this.events = new ArrayList<>();
+		for (int i = 0; i < events; i++) {
+			Event event = new Event(venues.get(random.nextInt(venueCount)),
+					1 + random.nextInt(sessions), "Act " + i);
+			try {
+				lineUp.addEvent(event);
+				this.events.add(event);
+			} catch (InvalidLineUpException e) {
+				// the venue is already taken in that session
+			}
+		}
+	}
+
+	/** Returns the venues of the festival. */
+	public List<Venue> getVenues() {
+		return venues;
+	}
+
+	/** Returns the number of sessions in the festival. */
+	public int getSessions() {
+		return sessions;
+	}
+
+	/** Returns the shuttle timetable of the festival. */
+	public ShuttleTimetable getTimetable() {
+		return timetable;
+	}
+
+	/** Returns the line-up of the festival. */
+	public LineUp getLineUp() {
+		return lineUp;
+	}
+
+	/** Returns the events of the line-up, in the order they were generated. */
+	public List<Event> getEvents() {
+		return events;
+	}
+
+	/**
+	 * Writes the line-up to the given file, in the format read by
+	 * LineUpReader.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void writeLineUp(File file) throws IOException {
+		try (Writer out = new BufferedWriter(new FileWriter(file))) {
+			for (Event event : events) {
+				out.write(event.toString());
+				out.write('\n');
+			}
+		}
+	}
+
+	/**
+	 * Writes the timetable to the given file, in the format read by
+	 * ScheduleReader.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void writeTimetable(File file) throws IOException {
+		try (Writer out = new BufferedWriter(new FileWriter(file))) {
+			out.write(sessions + "\n");
+			for (Venue source : venues) {
+				out.write(source.getName() + "\n");
+				for (int t = 1; t <= sessions; t++) {
+					out.write(Integer.toString(t));
+					for (Venue destination : timetable.getDestinations(source,
+							t)) {
+						out.write(" " + destination.getName());
+					}
+					out.write('\n');
+				}
+				out.write('\n');
+			}
+		}
+	}
+
+}
@@ -0,0 +1,227 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A mutable search index over the acts of a set of events.
+ * </p>
+ * 
+ * <p>
+ * Acts are matched case-insensitively. Prefix queries are answered from a
+ * sorted map of acts. Substring queries of at least three characters are
+ * answered from a trigram index that maps each three-character substring of
+ * each act to the acts that contain it: the postings of the query's trigrams
+ * are intersected and each remaining candidate is confirmed. Shorter
+ * substring queries are answered by scanning the distinct acts in the
+ * sorted map.
+ * </p>
+ */
+class ActIndex {
+
+	// the length of the substrings of acts that are indexed
+	private static final int GRAM_LENGTH = 3;
+
+	// the events for each act (in lower case), ordered by act
+	private NavigableMap<String, Set<Event>> acts;
+	// the acts (in lower case) containing each substring of GRAM_LENGTH
+	private Map<String, Set<String>> grams;
+	// the number of events in the index
+	private int size;
+
+	/*
+	 * Invariant: acts != null && grams != null && no set in acts or grams is
+	 * empty && grams.get(g).contains(a) iff a is a key of acts that contains
+	 * the substring g and g.length() == GRAM_LENGTH && size is the total size
+	 * of the sets in acts
+	 */
+
+	/**
+	 * Creates a new, empty act index.
+	 */
+	ActIndex() {
+		acts = new TreeMap<>();
+		grams = new HashMap<>();
+	}
+
+	/**
+	 * @require event != null
+	 * @ensure Adds the event to the index under its act.
+	 */
+	void add(Event event) {
+		// the act of the event, in lower case
+		String act = normalise(event.getAct());
+		// the events with the same act
+		Set<Event> events = acts.get(act);
+		if (events == null) {
+			events = new HashSet<>();
+			acts.put(act, events);
+			for (String gram : getGrams(act)) {
+				// the acts containing the gram
+				Set<String> containing = grams.get(gram);
+				if (containing == null) {
+					containing = new HashSet<>();
+					grams.put(gram, containing);
+				}
+				containing.add(act);
+			}
+		}
+		if (events.add(event)) {
+			size++;
+		}
+	}
+
+	/**
+	 * @require event != null
+	 * @ensure Removes the event from the index, if it is there.
+	 */
+	void remove(Event event) {
+		// the act of the event, in lower case
+		String act = normalise(event.getAct());
+		// the events with the same act
+		Set<Event> events = acts.get(act);
+		if (events == null || !events.remove(event)) {
+			return;
+		}
+		size--;
+		if (!events.isEmpty()) {
+			return;
+		}
+		acts.remove(act);
+		for (String gram : getGrams(act)) {
+			// the acts containing the gram
+			Set<String> containing = grams.get(gram);
+			containing.remove(act);
+			if (containing.isEmpty()) {
+				grams.remove(gram);
+			}
+		}
+	}
+
+	/**
+	 * @ensure Returns the number of events in the index.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @require prefix != null
+	 * @ensure Returns a new list of the indexed events whose acts start with
+	 *         the given prefix (ignoring case), in their natural ordering.
+	 */
+	List<Event> findByPrefix(String prefix) {
+		// the prefix, in lower case
+		String from = normalise(prefix);
+		// the events with acts starting with the prefix
+		List<Event> result = new ArrayList<>();
+		for (Set<Event> events : acts.subMap(from, true,
+				from + Character.MAX_VALUE, false).values()) {
+			result.addAll(events);
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * @require substring != null
+	 * @ensure Returns a new list of the indexed events whose acts contain the
+	 *         given substring (ignoring case), in their natural ordering.
+	 */
+	List<Event> findBySubstring(String substring) {
+		// the substring, in lower case
+		String query = normalise(substring);
+		if (query.isEmpty()) {
+			return findByPrefix(query);
+		}
+		// the acts that may contain the substring
+		Set<String> candidates = null;
+		if (query.length() < GRAM_LENGTH) {
+			candidates = acts.keySet();
+		} else {
+			// intersect the acts containing each trigram of the query
+			for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+				Set<String> containing = grams.get(query.substring(i, i
+						+ GRAM_LENGTH));
+				if (containing == null) {
+					candidates = null;
+					break;
+				}
+				if (candidates == null) {
+					candidates = new HashSet<>(containing);
+				} else {
+					candidates.retainAll(containing);
+				}
+			}
+		}
+		// the events with acts containing the substring
+		List<Event> result = new ArrayList<>();
+		if (candidates != null) {
+			for (String act : candidates) {
+				if (act.contains(query)) {
+					result.addAll(acts.get(act));
+				}
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns the given act in the form that it is indexed by.
+	 */
+	private static String normalise(String act) {
+		return act.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Returns the distinct substrings of the act that are GRAM_LENGTH
+	 * characters long.
+	 */
+	private static Set<String> getGrams(String act) {
+		// the substrings of the act
+		Set<String> result = new HashSet<>();
+		for (int i = 0; i + GRAM_LENGTH <= act.length(); i++) {
+			result.add(act.substring(i, i + GRAM_LENGTH));
+		}
+		return result;
+	}
+
+	/**
+	 * Determines whether this ActIndex is internally consistent (i.e. it
+	 * satisfies its class invariant).
+	 * 
+	 * @return true if this ActIndex is internally consistent, and false
+	 *         otherwise.
+	 */
+	boolean checkInvariant() {
+		if (acts == null || grams == null) {
+			return false;
+		}
+		// the number of (gram, act) pairs expected in grams
+		int pairs = 0;
+		// the number of events in acts
+		int count = 0;
+		for (Map.Entry<String, Set<Event>> entry : acts.entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				return false;
+			}
+			count += entry.getValue().size();
+			for (String gram : getGrams(entry.getKey())) {
+				if (!grams.containsKey(gram)
+						|| !grams.get(gram).contains(entry.getKey())) {
+					return false;
+				}
+				pairs++;
+			}
+		}
+		for (Set<String> containing : grams.values()) {
+			if (containing.isEmpty()) {
+				return false;
+			}
+			pairs -= containing.size();
+		}
+		return pairs == 0 && count == size;
+	}
+
+}
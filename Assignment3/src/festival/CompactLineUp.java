@@ -0,0 +1,575 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A mutable, compact representation of the line-up of a festival, for very
+ * large festivals.
+ * </p>
+ * 
+ * <p>
+ * It has the same rules as a LineUp (at most one event can be scheduled for a
+ * venue in a particular session), but rather than holding one Event object per
+ * event, it stores the venue id (local to the line-up), session number and
+ * act of each event in parallel arrays of primitive ints, with each distinct
+ * act stored only once. The acts are reference counted, so an act is released
+ * when its last event is removed, and its entry is reused by the next new act.
+ * Event objects are only created when they are asked for. Clashes are found
+ * using an open-addressing hash table of (venue id, session) slots; the other
+ * queries scan the arrays, which are small and contiguous.
+ * </p>
+ */
+public class CompactLineUp implements Iterable<Event> {
+
+	// Correct line separator for executing machine (used in toString method)
+	private static String LINE_SEPARATOR = System.getProperty("line.separator");
+	// the initial capacity of the arrays
+	private static final int INITIAL_CAPACITY = 16;
+
+	// the number of events in the line-up
+	private int size;
+	// the venue id, session and act index of each event, in parallel
+	private int[] venueIds;
+	private int[] sessions;
+	private int[] actIndices;
+	// the distinct acts of the events (null if free), and the index of each
+	private List<String> acts;
+	private Map<String, Integer> actIndex;
+	// the number of events with each act, indexed by act index
+	private int[] actCounts;
+	// the free indices in acts, to be reused before acts is grown
+	private List<Integer> freeActs;
+	/*
+	 * the venues of the events, numbered with ids local to the line-up (a
+	 * venue keeps its id after its last event is removed, since a festival has
+	 * few venues)
+	 */
+	private VenueRegistry venues;
+	/*
+	 * an open-addressing (linear probing) hash table from the slot key of each
+	 * event to one more than its index, where 0 marks an empty entry
+	 */
+	private long[] slotKeys;
+	private int[] slotIndices;
+
+	/*
+	 * Invariant: 0 <= size <= venueIds.length == sessions.length ==
+	 * actIndices.length && for 0 <= i < size, sessions[i] > 0 and
+	 * 0 <= venueIds[i] < venues.size() and 0 <= actIndices[i] < acts.size() &&
+	 * actIndex maps each non-null act in acts to its index && actCounts[a] is
+	 * the number of events with act index a, which is positive iff acts.get(a)
+	 * is not null && freeActs holds exactly the indices of the nulls in acts,
+	 * once each && no two events have the
+	 * same venue id and session && the slot table holds exactly the slot key
+	 * of each event, mapped to one more than its index, and is less than half
+	 * full
+	 */
+
+	/**
+	 * Creates a new compact line-up with no events scheduled.
+	 */
+	public CompactLineUp() {
+		venueIds = new int[INITIAL_CAPACITY];
+		sessions = new int[INITIAL_CAPACITY];
+		actIndices = new int[INITIAL_CAPACITY];
+		acts = new ArrayList<>();
+		actIndex = new HashMap<>();
+		actCounts = new int[0];
+		freeActs = new ArrayList<>();
+		venues = new VenueRegistry();
+		slotKeys = new long[INITIAL_CAPACITY * 2];
+		slotIndices = new int[INITIAL_CAPACITY * 2];
+	}
+
+	/**
+	 * Creates a new compact line-up with the same events as the given line-up.
+	 * 
+	 * @param lineUp
+	 *            the line-up to copy
+	 * @throws NullPointerException
+	 *             if lineUp is null
+	 */
+	public CompactLineUp(LineUp lineUp) {
+		this();
+		for (Event event : lineUp) {
+			addEvent(event);
+		}
+	}
+
+	/**
+	 * Adds a new event to the line-up.
+	 * 
+	 * @param event
+	 *            the event to be added to the line-up
+	 * @throws NullPointerException
+	 *             if event is null
+	 * @throws InvalidLineUpException
+	 *             if there is already an event scheduled for the same venue and
+	 *             session as the given event
+	 */
+	public void addEvent(Event event) {
+		if (event == null) {
+			throw new NullPointerException(
+					"Cannot add a null event to a line-up.");
+		}
+		if (findIndex(event.getVenue(), event.getSession()) >= 0) {
+			throw new InvalidLineUpException(
+					"Line up already includes an event at venue "
+							+ event.getVenue() + " at time "
+							+ event.getSession());
+		}
+		if (size == venueIds.length) {
+			venueIds = Arrays.copyOf(venueIds, size * 2);
+			sessions = Arrays.copyOf(sessions, size * 2);
+			actIndices = Arrays.copyOf(actIndices, size * 2);
+		}
+		venueIds[size] = venues.register(event.getVenue());
+		sessions[size] = event.getSession();
+		actIndices[size] = acquireAct(event.getAct());
+		size++;
+		if (size * 2 > slotKeys.length) {
+			rehash(slotKeys.length * 2);
+		} else {
+			putSlot(size - 1);
+		}
+	}
+
+	/**
+	 * If the line-up contains an event that is equivalent to this one, then it
+	 * is removed from the line-up. If there is no equivalent event, then the
+	 * line-up is unchanged by the operation.
+	 * 
+	 * @param event
+	 *            the event to be removed from the line-up.
+	 */
+	public void removeEvent(Event event) {
+		if (event == null) {
+			return;
+		}
+		// the index of the event with the same venue and session
+		int index = findIndex(event.getVenue(), event.getSession());
+		if (index < 0 || !acts.get(actIndices[index]).equals(event.getAct())) {
+			return;
+		}
+		removeSlot(index);
+		releaseAct(actIndices[index]);
+		size--;
+		if (index != size) {
+			// move the last event into the gap
+			removeSlot(size);
+			venueIds[index] = venueIds[size];
+			sessions[index] = sessions[size];
+			actIndices[index] = actIndices[size];
+			putSlot(index);
+		}
+	}
+
+	/**
+	 * Returns the event scheduled for the given venue and session, or null if
+	 * there is none.
+	 * 
+	 * @param venue
+	 *            the venue of the event
+	 * @param session
+	 *            the session of the event
+	 * @return the event scheduled for the given venue and session, or null if
+	 *         there is no such event.
+	 */
+	public Event getEvent(Venue venue, int session) {
+		// the index of the event
+		int index = findIndex(venue, session);
+		return index < 0 ? null : getEvent(index);
+	}
+
+	/**
+	 * Returns a list of the events scheduled for the given venue. The list of
+	 * events is ordered by session number (in ascending order).
+	 * 
+	 * @param venue
+	 *            the venue for which the events will be retrieved
+	 * @return a list of the events scheduled for the given venue, ordered by
+	 *         session number
+	 * @throws NullPointerException
+	 *             if the given venue is null
+	 */
+	public List<Event> getEvents(Venue venue) {
+		if (venue == null) {
+			throw new NullPointerException(
+					"Cannot retrieve events for a null venue.");
+		}
+		// the id of the venue, and the events for it
+		int venueId = venues.getId(venue);
+		List<Event> venueEvents = new ArrayList<>();
+		for (int i = 0; venueId >= 0 && i < size; i++) {
+			if (venueIds[i] == venueId) {
+				venueEvents.add(getEvent(i));
+			}
+		}
+		Collections.sort(venueEvents);
+		return venueEvents;
+	}
+
+	/**
+	 * Returns a list of the events scheduled for the given session time (across
+	 * all venues). The list is ordered by venue name (in ascending order).
+	 * 
+	 * @param session
+	 *            the session to retrieve the events for
+	 * @return A list of the events scheduled for the given session time.
+	 * @throws InvalidSessionException
+	 *             if session <= 0
+	 */
+	public List<Event> getEvents(int session) {
+		if (session <= 0) {
+			throw new InvalidSessionException("Session number " + session
+					+ " must be positive");
+		}
+		// the events for the given session
+		List<Event> sessionEvents = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			if (sessions[i] == session) {
+				sessionEvents.add(getEvent(i));
+			}
+		}
+		Collections.sort(sessionEvents);
+		return sessionEvents;
+	}
+
+	/**
+	 * Returns a set of all the venues where at least one event from the line-up
+	 * takes place.
+	 * 
+	 * @return The venues where events from the line-up will take place.
+	 */
+	public Set<Venue> getVenues() {
+		Set<Venue> result = new HashSet<>(); // venues used by the line-up
+		for (int i = 0; i < size; i++) {
+			result.add(venues.get(venueIds[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * If there is at least one event scheduled, then this method returns the
+	 * number of the first session where there is an event scheduled. Otherwise
+	 * it returns 0.
+	 * 
+	 * @return If there is at least one event scheduled, then the first session
+	 *         number that an event is scheduled for, and 0 otherwise.
+	 */
+	public int getFirstUsedSession() {
+		// the minimum session number that there is an event scheduled for
+		int result = size == 0 ? 0 : Integer.MAX_VALUE;
+		for (int i = 0; i < size; i++) {
+			result = Math.min(result, sessions[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * If there is at least one event scheduled, then this method returns the
+	 * number of the last session where there is an event scheduled. Otherwise
+	 * it returns 0.
+	 * 
+	 * @return If there is at least one event scheduled, then the last session
+	 *         number that an event is scheduled for, and 0 otherwise.
+	 */
+	public int getLastUsedSession() {
+		// the maximum session number that there is an event scheduled for
+		int result = 0;
+		for (int i = 0; i < size; i++) {
+			result = Math.max(result, sessions[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of events in the line-up.
+	 * 
+	 * @return the number of events in the line-up
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a new line-up with the same events as this one.
+	 * 
+	 * @return a LineUp with the same events as this one
+	 */
+	public LineUp toLineUp() {
+		// the events of the line-up
+		List<Event> events = new ArrayList<>(size);
+		for (Event event : this) {
+			events.add(event);
+		}
+		// the line-up under construction
+		LineUp lineUp = new LineUp();
+		lineUp.addAll(events);
+		return lineUp;
+	}
+
+	/**
+	 * Returns a read-only iterator over the events in the line-up. The events
+	 * are created as they are iterated over, and the iterator must not be used
+	 * after the line-up has been changed.
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return new Iterator<Event>() {
+			// the index of the next event
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Event next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return getEvent(index++);
+			}
+		};
+	}
+
+	/**
+	 * The string representation of a compact line-up is the same as that of a
+	 * LineUp with the same events: a line-separated concatenation of the
+	 * string representations of the events, in their natural ordering.
+	 */
+	@Override
+	public String toString() {
+		// the events in the line-up, in their natural ordering
+		Event[] sorted = new Event[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = getEvent(i);
+		}
+		Arrays.sort(sorted);
+		// the string representation under construction
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < sorted.length; i++) {
+			if (i != 0) {
+				result.append(LINE_SEPARATOR);
+			}
+			result.append(sorted[i]);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Determines whether this CompactLineUp is internally consistent (i.e. it
+	 * satisfies its class invariant).
+	 * 
+	 * @return true if this CompactLineUp is internally consistent, and false
+	 *         otherwise.
+	 */
+	public boolean checkInvariant() {
+		if (venueIds == null || sessions == null || actIndices == null
+				|| acts == null || actIndex == null || actCounts == null
+				|| freeActs == null || venues == null
+				|| !venues.checkInvariant() || slotKeys == null
+				|| slotIndices == null || size < 0 || size > venueIds.length
+				|| venueIds.length != sessions.length
+				|| venueIds.length != actIndices.length
+				|| acts.size() != actIndex.size() + freeActs.size()
+				|| acts.size() > actCounts.length
+				|| size * 2 > slotKeys.length) {
+			return false;
+		}
+		// whether each index in acts is free
+		boolean[] free = new boolean[acts.size()];
+		for (int index : freeActs) {
+			if (index < 0 || index >= acts.size() || free[index]) {
+				return false;
+			}
+			free[index] = true;
+		}
+		// the number of events with each act, counted from the events
+		int[] counts = new int[acts.size()];
+		for (int i = 0; i < size; i++) {
+			if (actIndices[i] < 0 || actIndices[i] >= acts.size()) {
+				return false;
+			}
+			counts[actIndices[i]]++;
+		}
+		for (int i = 0; i < acts.size(); i++) {
+			if (counts[i] != actCounts[i] || free[i] != (acts.get(i) == null)
+					|| free[i] != (counts[i] == 0) || (!free[i] && !Integer
+							.valueOf(i).equals(actIndex.get(acts.get(i))))) {
+				return false;
+			}
+		}
+		// the number of entries in the slot table
+		int entries = 0;
+		for (int index : slotIndices) {
+			if (index != 0) {
+				entries++;
+			}
+		}
+		if (entries != size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (sessions[i] <= 0 || venueIds[i] < 0
+					|| venueIds[i] >= venues.size() || actIndices[i] < 0
+					|| actIndices[i] >= acts.size()
+					|| findIndex(venueIds[i], sessions[i]) != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a new event with the values stored at the given index.
+	 */
+	private Event getEvent(int index) {
+		return new Event(venues.get(venueIds[index]), sessions[index],
+				acts.get(actIndices[index]));
+	}
+
+	/**
+	 * Returns the index of the given act, adding it (in a free entry if there
+	 * is one) if no event has it yet, and counts one more event with the act.
+	 */
+	private int acquireAct(String act) {
+		// the index of the act
+		Integer index = actIndex.get(act);
+		if (index == null) {
+			if (freeActs.isEmpty()) {
+				index = acts.size();
+				acts.add(act);
+			} else {
+				index = freeActs.remove(freeActs.size() - 1);
+				acts.set(index, act);
+			}
+			actIndex.put(act, index);
+			if (index >= actCounts.length) {
+				actCounts = Arrays.copyOf(actCounts, Math.max(index + 1,
+						actCounts.length * 2));
+			}
+		}
+		actCounts[index]++;
+		return index;
+	}
+
+	/**
+	 * Counts one less event with the act at the given index, releasing the
+	 * act's entry for reuse if no event has it any more.
+	 * 
+	 * @require actCounts[index] > 0
+	 */
+	private void releaseAct(int index) {
+		actCounts[index]--;
+		if (actCounts[index] == 0) {
+			actIndex.remove(acts.get(index));
+			acts.set(index, null);
+			freeActs.add(index);
+		}
+	}
+
+	/**
+	 * Returns the index of the event with the given venue and session, or -1
+	 * if there is none.
+	 */
+	private int findIndex(Venue venue, int session) {
+		// the id of the venue in the line-up
+		int venueId = venues.getId(venue);
+		return venueId < 0 ? -1 : findIndex(venueId, session);
+	}
+
+	/**
+	 * Returns the index of the event with the given venue id and session, or
+	 * -1 if there is none.
+	 */
+	private int findIndex(int venueId, int session) {
+		// the slot key of the venue and session
+		long key = getSlotKey(venueId, session);
+		for (int i = getBucket(key);; i = (i + 1) % slotKeys.length) {
+			if (slotIndices[i] == 0) {
+				return -1;
+			}
+			if (slotKeys[i] == key) {
+				return slotIndices[i] - 1;
+			}
+		}
+	}
+
+	/**
+	 * Adds the slot of the event at the given index to the slot table.
+	 * 
+	 * @require the slot table does not contain the event's slot and is less
+	 *          than half full
+	 */
+	private void putSlot(int index) {
+		// the slot key of the event
+		long key = getSlotKey(venueIds[index], sessions[index]);
+		int i = getBucket(key);
+		while (slotIndices[i] != 0) {
+			i = (i + 1) % slotKeys.length;
+		}
+		slotKeys[i] = key;
+		slotIndices[i] = index + 1;
+	}
+
+	/**
+	 * Removes the slot of the event at the given index from the slot table,
+	 * shifting back any later entries in the same run so that no lookup is
+	 * broken by the gap.
+	 * 
+	 * @require the slot table maps the event's slot to the given index
+	 */
+	private void removeSlot(int index) {
+		// the entry being removed
+		int gap = getBucket(getSlotKey(venueIds[index], sessions[index]));
+		while (slotIndices[gap] != index + 1) {
+			gap = (gap + 1) % slotKeys.length;
+		}
+		for (int i = (gap + 1) % slotKeys.length; slotIndices[i] != 0; i =
+				(i + 1) % slotKeys.length) {
+			// the bucket that the entry at i belongs in
+			int home = getBucket(slotKeys[i]);
+			// move the entry into the gap unless its home lies after the gap
+			if ((i > gap && (home <= gap || home > i))
+					|| (i < gap && home <= gap && home > i)) {
+				slotKeys[gap] = slotKeys[i];
+				slotIndices[gap] = slotIndices[i];
+				gap = i;
+			}
+		}
+		slotIndices[gap] = 0;
+	}
+
+	/**
+	 * Rebuilds the slot table with the given capacity.
+	 */
+	private void rehash(int capacity) {
+		slotKeys = new long[capacity];
+		slotIndices = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			putSlot(i);
+		}
+	}
+
+	/**
+	 * Returns the bucket of the slot table where a search for the given key
+	 * starts.
+	 */
+	private int getBucket(long key) {
+		// spread the bits of the key (a Fibonacci hash)
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) ((hash >>> 32) % slotKeys.length);
+	}
+
+	/**
+	 * Returns a key that is unique to the given venue id and session.
+	 */
+	private static long getSlotKey(int venueId, int session) {
+		return ((long) venueId << 32) | session;
+	}
+
+}
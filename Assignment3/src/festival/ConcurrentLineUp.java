@@ -0,0 +1,190 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A line-up of a festival that can be shared between threads.
+ * </p>
+ * 
+ * <p>
+ * Readers never block: each read works on the current LineUpSnapshot, an
+ * immutable view of the line-up that stays consistent however the line-up is
+ * changed after it was taken. Writers are serialised; each change builds a
+ * new snapshot (copy-on-write) and publishes it with a single volatile write.
+ * </p>
+ * 
+ * <p>
+ * A reader that needs to make several queries against the same state of the
+ * line-up should take a snapshot once and query that.
+ * </p>
+ */
+public class ConcurrentLineUp implements Iterable<Event> {
+
+	// the current state of the line-up
+	private volatile LineUpSnapshot snapshot;
+
+	/*
+	 * Invariant: snapshot != null && snapshot.checkInvariant() && snapshot is
+	 * only replaced while holding the lock on this
+	 */
+
+	/**
+	 * Creates a new line-up with no events scheduled.
+	 */
+	public ConcurrentLineUp() {
+		snapshot = LineUpSnapshot.EMPTY;
+	}
+
+	/**
+	 * Creates a new line-up with the same events as the given line-up.
+	 * 
+	 * @param lineUp
+	 *            the line-up to copy
+	 * @throws NullPointerException
+	 *             if lineUp is null
+	 */
+	public ConcurrentLineUp(LineUp lineUp) {
+		// the events of the line-up
+		List<Event> events = new ArrayList<>();
+		for (Event event : lineUp) {
+			events.add(event);
+		}
+		snapshot = LineUpSnapshot.EMPTY.withEvents(events);
+	}
+
+	/**
+	 * Returns the current state of the line-up. The snapshot is immutable, so
+	 * it is not affected by later changes to this line-up.
+	 * 
+	 * @return the current state of the line-up
+	 */
+	public LineUpSnapshot snapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Adds a new event to the line-up.
+	 * 
+	 * @param event
+	 *            the event to add to the line-up
+	 * @throws NullPointerException
+	 *             if event is null
+	 * @throws InvalidLineUpException
+	 *             if there is already an event scheduled for the same venue and
+	 *             session as the given event
+	 */
+	public synchronized void addEvent(Event event) {
+		if (event == null) {
+			throw new NullPointerException(
+					"Cannot add a null event to a line-up.");
+		}
+		snapshot = snapshot.withEvent(event);
+	}
+
+	/**
+	 * Adds all of the given events to the line-up. Either all of the events
+	 * are added, or (if an exception is thrown) none of them are; readers
+	 * never see only some of them. The new snapshot is built once from the
+	 * whole batch, not once per event.
+	 * 
+	 * @param events
+	 *            the events to add to the line-up
+	 * @throws NullPointerException
+	 *             if events is null or contains null
+	 * @throws InvalidLineUpException
+	 *             if two of the events, or one of the events and an event
+	 *             already in the line-up, are scheduled for the same venue and
+	 *             session
+	 */
+	public synchronized void addAll(Collection<? extends Event> events) {
+		if (events == null) {
+			throw new NullPointerException(
+					"Cannot add a null collection of events to a line-up.");
+		}
+		snapshot = snapshot.withEvents(events);
+	}
+
+	/**
+	 * Removes the given event from the line-up. If the event is null or not
+	 * in the line-up, then the line-up is left unchanged.
+	 * 
+	 * @param event
+	 *            the event to remove
+	 */
+	public synchronized void removeEvent(Event event) {
+		if (event != null) {
+			snapshot = snapshot.withoutEvent(event);
+		}
+	}
+
+	/**
+	 * Returns the event scheduled for the given venue and session in the
+	 * current state of the line-up, or null if there is none.
+	 * 
+	 * @see LineUpSnapshot#getEvent(Venue, int)
+	 */
+	public Event getEvent(Venue venue, int session) {
+		return snapshot.getEvent(venue, session);
+	}
+
+	/**
+	 * Returns a read-only list of the events scheduled for the given venue in
+	 * the current state of the line-up, ordered by session number.
+	 * 
+	 * @see LineUpSnapshot#getEvents(Venue)
+	 */
+	public List<Event> getEvents(Venue venue) {
+		return snapshot.getEvents(venue);
+	}
+
+	/**
+	 * Returns a read-only list of the events scheduled for the given session
+	 * in the current state of the line-up, ordered by venue name.
+	 * 
+	 * @see LineUpSnapshot#getEvents(int)
+	 */
+	public List<Event> getEvents(int session) {
+		return snapshot.getEvents(session);
+	}
+
+	/**
+	 * Returns the number of events in the current state of the line-up.
+	 */
+	public int size() {
+		return snapshot.size();
+	}
+
+	/**
+	 * Returns an iterator over the events in the current state of the line-up.
+	 * Changes made to the line-up while iterating are not seen by the
+	 * iterator.
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return snapshot.iterator();
+	}
+
+	/**
+	 * Returns the string representation of the current state of the line-up,
+	 * which is the same as that of a LineUp with the same events.
+	 */
+	@Override
+	public String toString() {
+		return snapshot.toString();
+	}
+
+	/**
+	 * Determines whether this line-up is internally consistent (i.e. it
+	 * satisfies its class invariant).
+	 * 
+	 * @return true if this line-up is internally consistent, and false
+	 *         otherwise.
+	 */
+	public boolean checkInvariant() {
+		// the snapshot to check
+		LineUpSnapshot current = snapshot;
+		return current != null && current.checkInvariant();
+	}
+
+}
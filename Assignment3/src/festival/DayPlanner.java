@@ -1,15 +1,36 @@
 package festival;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 /**
+ * <p>
  * A class with functionality for helping a festival-goer to plan their day at a
  * festival.
+ * </p>
+ * 
+ * <p>
+ * A day planner is safe to share between threads: its timetable is a
+ * FrozenTimetable, which can never change, and the reachability results that
+ * it memoizes are published through a concurrent map.
+ * </p>
  */
 public class DayPlanner {
 
 	// the timetable of the festival
-	private ShuttleTimetable timetable;
+	private final FrozenTimetable timetable;
+	// the session after the last one that any service departs at the end of
+	private final int horizon;
+	/*
+	 * the earliest session each venue can be reached by, memoized for each
+	 * source venue and source session that has been queried, and keyed by
+	 * getStateKey(source venue, source session)
+	 */
+	private final ConcurrentMap<Long, int[]> earliestArrivals;
+	// the precomputed reachability closure of the timetable, or null if none
+	private final ReachabilityClosure closure;
 
 	/**
 	 * @require timetable!=null
@@ -19,10 +40,51 @@ public class DayPlanner {
 	 *         day-planner.)
 	 */
 	public DayPlanner(ShuttleTimetable timetable) {
-		this.timetable = new ShuttleTimetable();
-		for (Service service : timetable) {
-			this.timetable.addService(service);
-		}
+		this(timetable, false);
+	}
+
+	/**
+	 * @require timetable!=null
+	 * @ensure Creates a new day planner for a festival with a copy of the given
+	 *         shuttle timetable (so that changes to the parameter timetable
+	 *         from outside of this class won't affect the timetable of the
+	 *         day-planner.)
+	 * 
+	 *         If precompute is true, then the set of (venue, session) states
+	 *         reachable from every (venue, session) state of the timetable is
+	 *         computed up front, so that canReach and compatible take constant
+	 *         time per event. This takes space quadratic in the number of
+	 *         venues used by the timetable times its number of sessions.
+	 */
+	public DayPlanner(ShuttleTimetable timetable, boolean precompute) {
+		this(timetable.freeze(), precompute);
+	}
+
+	/**
+	 * @require timetable!=null
+	 * @ensure Creates a new day planner for a festival that shares the given
+	 *         frozen timetable (which can never change, so need not be
+	 *         copied).
+	 */
+	public DayPlanner(FrozenTimetable timetable) {
+		this(timetable, false);
+	}
+
+	/**
+	 * @require timetable!=null
+	 * @ensure Creates a new day planner for a festival that shares the given
+	 *         frozen timetable (which can never change, so need not be
+	 *         copied).
+	 * 
+	 *         If precompute is true, then the set of (venue, session) states
+	 *         reachable from every (venue, session) state of the timetable is
+	 *         computed up front, as for DayPlanner(ShuttleTimetable, boolean).
+	 */
+	public DayPlanner(FrozenTimetable timetable, boolean precompute) {
+		this.timetable = timetable;
+		horizon = timetable.getLastSession() + 1;
+		earliestArrivals = new ConcurrentHashMap<>();
+		closure = precompute ? new ReachabilityClosure(timetable) : null;
 	}
 
 	/**
@@ -54,6 +116,19 @@ public class DayPlanner {
 		return true;
 	}
 
+	/**
+	 * @require plans!=null && each plan in plans satisfies the requirements of
+	 *          compatible(List)
+	 * @ensure Returns a list of the results of calling compatible on each of
+	 *         the plans, in the order that the plans are iterated over. The
+	 *         plans are checked in parallel, using the common fork/join pool.
+	 */
+	public List<Boolean> compatibleAll(
+			Collection<? extends List<Event>> plans) {
+		return new ArrayList<List<Event>>(plans).parallelStream()
+				.map(this::compatible).collect(Collectors.toList());
+	}
+
 	/**
 	 * @require source != null && destination != null
 	 * @ensure Returns true if it is possible to be at the source's venue for
@@ -66,6 +141,284 @@ public class DayPlanner {
 				destination.getVenue(), destination.getSession());
 	}
 
+	/**
+	 * @require source != null && destination != null
+	 * @ensure Returns null if canReach(source, destination) is false.
+	 *         Otherwise returns a list of services from the day-planner's
+	 *         timetable, in the order that they should be caught, that will
+	 *         get a festival-goer from the source's venue at the end of the
+	 *         source's session to the destination's venue in time for the
+	 *         destination's session. Of all such lists, the one returned has
+	 *         the fewest services (and so the fewest transfers); it is empty
+	 *         if no services are needed.
+	 * 
+	 *         The route is found by a breadth-first search over the (venue,
+	 *         session) states of the timetable's venues and the sessions
+	 *         between the two that services depart in, in which staying at a
+	 *         venue costs nothing and catching a service costs one, and is
+	 *         read back from the parent pointers left by the search.
+	 **/
+	public List<Service> getItinerary(Event source, Event destination) {
+		if (!canReach(source, destination)) {
+			return null;
+		}
+		// the services caught, read back from the target state
+		List<Service> itinerary = new ArrayList<>();
+		if (source.getVenue().equals(destination.getVenue())) {
+			return itinerary;
+		}
+		/*
+		 * The venues are distinct and the destination can be reached, so the
+		 * source has a service departing it and the destination has one
+		 * arriving at it, so both have local indices in the timetable. Only the
+		 * sessions that services depart at the end of are searched: layer k
+		 * (for k < layers - 1) ends with the session with index first + k,
+		 * and the last layer ends with the destination's session.
+		 */
+		int venueCount = timetable.getVenueCount();
+		int first = timetable.getSessionIndex(source.getSession());
+		int layers = timetable.getSessionIndex(destination.getSession())
+				- first + 1;
+		/*
+		 * the fewest services needed to reach each state, and the state that it
+		 * was reached from, where the state of the venue with local index v in
+		 * layer k is k * venueCount + v
+		 */
+		int[] transfers = new int[layers * venueCount];
+		int[] parents = new int[layers * venueCount];
+		Arrays.fill(transfers, Integer.MAX_VALUE);
+		// the states to search from, with those needing fewer services first
+		Deque<Integer> queue = new ArrayDeque<>();
+		// the initial and target states
+		int initial = timetable.getVenueIndex(source.getVenue());
+		int target = (layers - 1) * venueCount
+				+ timetable.getVenueIndex(destination.getVenue());
+		transfers[initial] = 0;
+		parents[initial] = -1;
+		queue.add(initial);
+		while (!queue.isEmpty()) {
+			int state = queue.poll();
+			if (state == target) {
+				break;
+			}
+			// the layer and venue index of the state
+			int layer = state / venueCount;
+			int venue = state % venueCount;
+			if (layer == layers - 1) {
+				continue;
+			}
+			// stay at the venue until the next layer
+			if (transfers[state] < transfers[state + venueCount]) {
+				transfers[state + venueCount] = transfers[state];
+				parents[state + venueCount] = state;
+				queue.addFirst(state + venueCount);
+			}
+			// catch a service at the end of the layer's session
+			int t = timetable.getSession(first + layer);
+			for (int i = timetable.getStart(venue, t), end = timetable.getEnd(
+					venue, t); i < end; i++) {
+				// the state of the service's destination in the next layer
+				int next = (layer + 1) * venueCount
+						+ timetable.getDestinationIndex(i);
+				if (transfers[state] + 1 < transfers[next]) {
+					transfers[next] = transfers[state] + 1;
+					parents[next] = state;
+					queue.addLast(next);
+				}
+			}
+		}
+		for (int state = target; parents[state] >= 0; state = parents[state]) {
+			// the venue of the state, and of the state it was reached from
+			int to = state % venueCount;
+			int from = parents[state] % venueCount;
+			if (from != to) {
+				itinerary.add(new Service(timetable.getVenue(from), timetable
+						.getVenue(to), timetable.getSession(first
+						+ parents[state] / venueCount)));
+			}
+		}
+		Collections.reverse(itinerary);
+		return itinerary;
+	}
+
+	/**
+	 * @require lineUp != null
+	 * @ensure Returns the same plan as getOptimalPlan(lineUp, null): a
+	 *         compatible plan that includes as many events from the line-up as
+	 *         possible.
+	 */
+	public List<Event> getOptimalPlan(LineUp lineUp) {
+		return getOptimalPlan(lineUp, null);
+	}
+
+	/**
+	 * @require lineUp != null && (weights == null ||
+	 *          !weights.containsValue(null))
+	 * @ensure Returns a plan of events from the line-up, ordered by session
+	 *         number, that is compatible (as per the compatible method) and
+	 *         has the greatest total weight of any compatible plan. The weight
+	 *         of an event is the weight of its act in weights, or 1 if weights
+	 *         is null or does not contain the act. (Events with a weight that
+	 *         is not positive are never included.)
+	 * 
+	 *         The plan is found by dynamic programming over the sessions in
+	 *         which events are scheduled or services depart, keeping the best
+	 *         total weight that can be had on arriving at each venue by each
+	 *         of them, so it takes time linear in the number of events, plus
+	 *         the number of those sessions times the number of venues (of the
+	 *         line-up and timetable), plus the number of services.
+	 */
+	public List<Event> getOptimalPlan(LineUp lineUp,
+			Map<String, Double> weights) {
+		// the first and last sessions that events are scheduled for
+		int first = lineUp.getFirstUsedSession();
+		int last = lineUp.getLastUsedSession();
+		if (first == 0) {
+			return new ArrayList<>();
+		}
+		/*
+		 * the indices of the venues: a venue used by the timetable has its
+		 * local index in the timetable, and the other venues of the line-up
+		 * are numbered after them
+		 */
+		int venueCount = timetable.getVenueCount();
+		Map<Venue, Integer> otherVenues = new HashMap<>();
+		for (Venue venue : lineUp.getVenues()) {
+			if (timetable.getVenueIndex(venue) < 0) {
+				otherVenues.put(venue, venueCount++);
+			}
+		}
+		/*
+		 * the sessions in which anything happens, in ascending order: those
+		 * that events are scheduled for, and those that services depart at
+		 * the end of (between the first and last sessions)
+		 */
+		SortedSet<Integer> steps = new TreeSet<>(lineUp.getSessionCounts()
+				.keySet());
+		for (int k = timetable.getSessionIndex(first); k < timetable
+				.getSessionCount() && timetable.getSession(k) < last; k++) {
+			steps.add(timetable.getSession(k));
+		}
+		// the step of each session in steps
+		Map<Integer, Integer> stepOf = new HashMap<>();
+		for (int session : steps) {
+			stepOf.put(session, stepOf.size());
+		}
+		// the events of the line-up, indexed by step and then venue index
+		Event[][] events = new Event[steps.size()][];
+		for (Event event : lineUp) {
+			// the step of the event
+			int step = stepOf.get(event.getSession());
+			if (events[step] == null) {
+				events[step] = new Event[venueCount];
+			}
+			events[step][getVenueIndex(event.getVenue(), otherVenues)] =
+					event;
+		}
+		// the best total weight on arriving at each venue by the step
+		double[] best = new double[venueCount];
+		/*
+		 * for each step and venue, the venue that was left at the end of the
+		 * previous step to get to that venue with the best total weight
+		 */
+		int[][] previous = new int[steps.size()][];
+		/*
+		 * for each step, whether the event at each venue is attended on the
+		 * way to the best total weight
+		 */
+		boolean[][] attended = new boolean[steps.size()][venueCount];
+		// the index of the current step
+		int step = 0;
+		for (int t : steps) {
+			// attend any events worth attending in session t
+			if (events[step] != null) {
+				for (Event event : events[step]) {
+					// the weight of the event, if there is one
+					double weight = event == null ? 0 : getWeight(event,
+							weights);
+					if (weight > 0) {
+						// the index of the venue of the event
+						int v = getVenueIndex(event.getVenue(), otherVenues);
+						best[v] += weight;
+						attended[step][v] = true;
+					}
+				}
+			}
+			if (t == last) {
+				break;
+			}
+			// the best total weight on arriving at each venue by the next step
+			double[] next = best.clone();
+			// the venues left at the end of session t for each venue
+			int[] from = new int[venueCount];
+			for (int v = 0; v < venueCount; v++) {
+				from[v] = v;
+			}
+			// the index of session t among the sessions services depart in
+			int k = timetable.getSessionIndex(t);
+			for (int u = 0; k < timetable.getSessionCount()
+					&& timetable.getSession(k) == t
+					&& u < timetable.getVenueCount(); u++) {
+				for (int i = timetable.getStart(u, t), end = timetable.getEnd(
+						u, t); i < end; i++) {
+					// the local index of the destination of the service
+					int v = timetable.getDestinationIndex(i);
+					if (best[u] > next[v]) {
+						next[v] = best[u];
+						from[v] = u;
+					}
+				}
+			}
+			best = next;
+			previous[++step] = from;
+		}
+		// the venue to be at in the last step
+		int venue = 0;
+		for (int v = 1; v < venueCount; v++) {
+			if (best[v] > best[venue]) {
+				venue = v;
+			}
+		}
+		// the plan, built backwards from the last step
+		List<Event> plan = new ArrayList<>();
+		for (step = steps.size() - 1; step >= 0; step--) {
+			if (attended[step][venue]) {
+				plan.add(events[step][venue]);
+			}
+			if (step > 0) {
+				venue = previous[step][venue];
+			}
+		}
+		Collections.reverse(plan);
+		return plan;
+	}
+
+	/**
+	 * @require venue != null && (venue is used by the timetable or
+	 *          otherVenues contains it)
+	 * @ensure Returns the index of the venue in getOptimalPlan: its local
+	 *         index in the timetable if it is used by the timetable, and
+	 *         otherwise its index in otherVenues.
+	 */
+	private int getVenueIndex(Venue venue, Map<Venue, Integer> otherVenues) {
+		// the local index of the venue in the timetable, if it is used
+		int index = timetable.getVenueIndex(venue);
+		return index >= 0 ? index : otherVenues.get(venue);
+	}
+
+	/**
+	 * @require event != null && (weights == null ||
+	 *          !weights.containsValue(null))
+	 * @ensure Returns the weight of the event's act in weights, or 1 if
+	 *         weights is null or does not contain the act.
+	 */
+	private double getWeight(Event event, Map<String, Double> weights) {
+		if (weights == null || !weights.containsKey(event.getAct())) {
+			return 1;
+		}
+		return weights.get(event.getAct());
+	}
+
 	/**
 	 * @require sourceVenue != null && destinationVenue != null &&
 	 *          sourceSession>0 && destinationSession >0
@@ -76,30 +429,95 @@ public class DayPlanner {
 	 **/
 	private boolean canReach(Venue sourceVenue, int sourceSession,
 			Venue destinationVenue, int destinationSession) {
-
-		// you can't reach an event at an earlier time
-		if (destinationSession < sourceSession) {
-			return false;
+		if (closure != null) {
+			return closure.canReach(sourceVenue, sourceSession,
+					destinationVenue, destinationSession);
 		}
-		// events at the same time have to be the same time and place
-		if (destinationSession == sourceSession) {
-			return sourceVenue.equals(destinationVenue);
-
+		// the local indices of the source and destination venues
+		int source = timetable.getVenueIndex(sourceVenue);
+		int destination = timetable.getVenueIndex(destinationVenue);
+		if (sourceSession >= horizon || source < 0 || destination < 0) {
+			// no services can take the festival-goer to the destination
+			return sourceVenue.equals(destinationVenue)
+					&& destinationSession >= sourceSession;
 		}
-		// you can reach an event at the same venue at a later time
-		if (sourceVenue.equals(destinationVenue)) {
-			return true;
+		// the earliest session each venue can be reached by, by local index
+		int[] arrivals = getEarliestArrivals(source, sourceSession);
+		return arrivals[destination] != 0
+				&& arrivals[destination] <= destinationSession;
+	}
+
+	/**
+	 * @require 0 <= source < timetable.getVenueCount() && 0 < sourceSession <
+	 *          horizon
+	 * @ensure Returns an array, indexed by local venue index, of the earliest
+	 *         session that each venue of the timetable can be reached by from
+	 *         the venue with the local index source at the source session, or
+	 *         0 if the venue cannot be reached. The source venue itself is
+	 *         reached by the source session, and a venue that can be reached
+	 *         by a session can be reached by any later session by staying
+	 *         there.
+	 * 
+	 *         The result for each source venue and session is computed once,
+	 *         visiting each (venue, session) state at most once, and is reused
+	 *         by later queries from the same source venue and session.
+	 **/
+	private int[] getEarliestArrivals(int source, int sourceSession) {
+		// the key of the source venue and session in earliestArrivals
+		long key = getStateKey(source, sourceSession);
+		// the earliest session each venue can be reached by
+		int[] arrivals = earliestArrivals.get(key);
+		if (arrivals == null) {
+			// threads racing on the same key compute the same result
+			arrivals = findEarliestArrivals(source, sourceSession);
+			earliestArrivals.putIfAbsent(key, arrivals);
 		}
-		// services would be required to reach the destination
-		for (int t = sourceSession; t < destinationSession; t++) {
-			Set<Venue> adjacent = timetable.getDestinations(sourceVenue, t);
-			for (Venue v : adjacent) {
-				if (canReach(v, t + 1, destinationVenue, destinationSession)) {
-					return true;
+		return arrivals;
+	}
+
+	/**
+	 * Returns a key that is unique to the given local venue index and session.
+	 */
+	private static long getStateKey(int venueIndex, int session) {
+		return ((long) venueIndex << 32) | session;
+	}
+
+	/**
+	 * @require 0 <= source < timetable.getVenueCount() && 0 < sourceSession <
+	 *          horizon
+	 * @ensure Returns an array, indexed by local venue index, of the earliest
+	 *         session that each venue can be reached by from the venue with
+	 *         the local index source at the source session (or 0 if it cannot
+	 *         be reached), found by sweeping forward through the sessions of
+	 *         the timetable.
+	 **/
+	private int[] findEarliestArrivals(int source, int sourceSession) {
+		// the earliest session each venue can be reached by, by local index
+		int[] arrivals = new int[timetable.getVenueCount()];
+		// the venues reached so far, in the order they were reached
+		int[] reached = new int[arrivals.length];
+		int count = 0; // the number of venues reached so far
+		arrivals[source] = sourceSession;
+		reached[count++] = source;
+		// only the sessions that services depart at the end of are swept
+		for (int k = timetable.getSessionIndex(sourceSession); k < timetable
+				.getSessionCount(); k++) {
+			// the session, and the venues that can be reached by its end
+			int t = timetable.getSession(k);
+			int reachedByT = count;
+			for (int r = 0; r < reachedByT; r++) {
+				for (int i = timetable.getStart(reached[r], t), end = timetable
+						.getEnd(reached[r], t); i < end; i++) {
+					// the local index of the destination of the service
+					int v = timetable.getDestinationIndex(i);
+					if (arrivals[v] == 0) {
+						arrivals[v] = t + 1;
+						reached[count++] = v;
+					}
 				}
 			}
 		}
-		return false;
+		return arrivals;
 	}
 
 }
@@ -0,0 +1,377 @@
+package festival;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * <p>
+ * The line-up and shuttle timetable of a festival, together, and a compact
+ * binary file format for saving and quickly loading them.
+ * </p>
+ * 
+ * <p>
+ * A snapshot file is a sequence of big-endian values:
+ * </p>
+ * 
+ * <ol>
+ * <li>a header: the magic number 0x46455354 ("FEST") and the format version,
+ * each as an int;</li>
+ * <li>the venue table: the number of venues, as an int, followed by the name
+ * of each venue;</li>
+ * <li>the act table: the number of distinct acts, as an int, followed by each
+ * act;</li>
+ * <li>the events: the number of events, as an int, followed by the venue
+ * index (into the venue table), session and act index (into the act table)
+ * of each event, as ints, in line-up order;</li>
+ * <li>the services: the number of services, as an int, followed by the
+ * source venue index, destination venue index and session of each service,
+ * as ints;</li>
+ * <li>a CRC-32 checksum of all of the preceding bytes, as an int.</li>
+ * </ol>
+ * 
+ * <p>
+ * Each string (venue name or act) is stored as the number of bytes in its
+ * UTF-8 encoding, as an int, followed by those bytes.
+ * </p>
+ */
+public class FestivalSnapshot {
+
+	// the magic number that starts a snapshot file ("FEST")
+	private static final int MAGIC = 0x46455354;
+	// the version of the format written by this class
+	private static final int VERSION = 1;
+	// the number of bytes in the header and in the checksum
+	private static final int HEADER_SIZE = 8;
+	private static final int CHECKSUM_SIZE = 4;
+	// the number of bytes in an event record and in a service record
+	private static final int RECORD_SIZE = 12;
+
+	// the line-up of the festival
+	private final LineUp lineUp;
+	// the shuttle timetable of the festival
+	private final ShuttleTimetable timetable;
+
+	/*
+	 * Invariant: lineUp != null && timetable != null
+	 */
+
+	/**
+	 * Creates a snapshot of the given line-up and timetable. The snapshot
+	 * refers to (rather than copies) them.
+	 * 
+	 * @param lineUp
+	 *            the line-up of the festival
+	 * @param timetable
+	 *            the shuttle timetable of the festival
+	 * @throws NullPointerException
+	 *             if lineUp or timetable is null
+	 */
+	public FestivalSnapshot(LineUp lineUp, ShuttleTimetable timetable) {
+		if (lineUp == null || timetable == null) {
+			throw new NullPointerException("Input parameters cannot be null");
+		}
+		this.lineUp = lineUp;
+		this.timetable = timetable;
+	}
+
+	/**
+	 * Returns the line-up of the festival.
+	 * 
+	 * @return the line-up of the festival
+	 */
+	public LineUp getLineUp() {
+		return lineUp;
+	}
+
+	/**
+	 * Returns the shuttle timetable of the festival.
+	 * 
+	 * @return the shuttle timetable of the festival
+	 */
+	public ShuttleTimetable getTimetable() {
+		return timetable;
+	}
+
+	/**
+	 * Writes the line-up and timetable to the file called fileName, in the
+	 * snapshot format described above.
+	 * 
+	 * @param fileName
+	 *            the file to write to
+	 * @throws IOException
+	 *             if there is an error writing to the file
+	 */
+	public void write(String fileName) throws IOException {
+		// the index of each venue in the venue table
+		Map<Venue, Integer> venues = new LinkedHashMap<>();
+		// the index of each act in the act table
+		Map<String, Integer> acts = new LinkedHashMap<>();
+		// the number of events in the line-up
+		int eventCount = 0;
+		for (Event event : lineUp) {
+			eventCount++;
+			indexOf(venues, event.getVenue());
+			indexOf(acts, event.getAct());
+		}
+		for (Service service : timetable) {
+			indexOf(venues, service.getSource());
+			indexOf(venues, service.getDestination());
+		}
+
+		// the checksum of the bytes written
+		CRC32 checksum = new CRC32();
+		try (BufferedOutputStream file = new BufferedOutputStream(
+				new FileOutputStream(fileName))) {
+			// the stream that the checksummed bytes are written to
+			DataOutputStream out = new DataOutputStream(
+					new CheckedOutputStream(file, checksum));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(venues.size());
+			for (Venue venue : venues.keySet()) {
+				writeString(out, venue.getName());
+			}
+			out.writeInt(acts.size());
+			for (String act : acts.keySet()) {
+				writeString(out, act);
+			}
+			out.writeInt(eventCount);
+			for (Event event : lineUp) {
+				out.writeInt(venues.get(event.getVenue()));
+				out.writeInt(event.getSession());
+				out.writeInt(acts.get(event.getAct()));
+			}
+			out.writeInt(timetable.size());
+			for (Service service : timetable) {
+				out.writeInt(venues.get(service.getSource()));
+				out.writeInt(venues.get(service.getDestination()));
+				out.writeInt(service.getSession());
+			}
+			out.flush();
+			new DataOutputStream(file).writeInt((int) checksum.getValue());
+		}
+	}
+
+	/**
+	 * Loads a snapshot from the file called fileName, which should have been
+	 * written by write. The file is memory-mapped, and its checksum is
+	 * verified before it is read.
+	 * 
+	 * The line-up and timetable are decoded straight from the mapping and
+	 * built in bulk (see LineUp.addAll and ShuttleTimetable.addAll), so each
+	 * record is only checked to refer to entries of the tables, and clashes
+	 * and duplicates are found in one hashed pass over all of the records.
+	 * The file is closed before this returns, and no reference to the
+	 * mapping is kept, so it is released as soon as it is collected (Java
+	 * has no way to unmap a buffer explicitly).
+	 * 
+	 * @param fileName
+	 *            the file to read from
+	 * @return the snapshot read from the file
+	 * @throws IOException
+	 *             if there is an error reading from the file
+	 * @throws FormatException
+	 *             if the file is not a snapshot, is of an unsupported version,
+	 *             is truncated or corrupt, or describes an invalid line-up or
+	 *             timetable
+	 */
+	public static FestivalSnapshot load(String fileName) throws IOException,
+			FormatException {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new FormatException("snapshot is too large");
+			}
+			return load(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()));
+		}
+	}
+
+	/**
+	 * Verifies the header and checksum of the mapped snapshot, and then reads
+	 * its tables and records.
+	 * 
+	 * @require buffer != null && buffer is positioned at the start of the
+	 *          snapshot
+	 * @throws FormatException
+	 *             if the buffer is not a valid snapshot
+	 */
+	private static FestivalSnapshot load(MappedByteBuffer buffer)
+			throws FormatException {
+		if (buffer.remaining() < HEADER_SIZE + CHECKSUM_SIZE
+				|| buffer.getInt() != MAGIC) {
+			throw new FormatException("not a festival snapshot");
+		}
+		// the version of the format of the file
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new FormatException("unsupported snapshot version "
+					+ version);
+		}
+		// the end of the checksummed bytes
+		int end = buffer.limit() - CHECKSUM_SIZE;
+		// the checksum of the bytes of the file
+		CRC32 checksum = new CRC32();
+		// the checksummed bytes of the file
+		ByteBuffer checked = buffer.duplicate();
+		checked.position(0);
+		checked.limit(end);
+		checksum.update(checked);
+		if (buffer.getInt(end) != (int) checksum.getValue()) {
+			throw new FormatException("snapshot checksum does not match its"
+					+ " contents");
+		}
+		buffer.limit(end);
+		try {
+			return read(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new FormatException("snapshot is truncated");
+		}
+	}
+
+	/**
+	 * Reads the tables and records of a snapshot from the buffer.
+	 * 
+	 * @require buffer != null && buffer is positioned after the header and
+	 *          limited to before the checksum
+	 * @throws FormatException
+	 *             if the buffer does not describe a valid line-up and
+	 *             timetable
+	 */
+	private static FestivalSnapshot read(ByteBuffer buffer)
+			throws FormatException {
+		// the venue table
+		Venue[] venues = new Venue[readCount(buffer, 4, "venues")];
+		for (int i = 0; i < venues.length; i++) {
+			venues[i] = new Venue(readString(buffer));
+		}
+		// the act table
+		String[] acts = new String[readCount(buffer, 4, "acts")];
+		for (int i = 0; i < acts.length; i++) {
+			acts[i] = readString(buffer);
+		}
+
+		// the events, in line-up order
+		Event[] events = new Event[readCount(buffer, RECORD_SIZE, "events")];
+		for (int i = 0; i < events.length; i++) {
+			// the venue, session and act of the event
+			int venue = buffer.getInt();
+			int session = buffer.getInt();
+			int act = buffer.getInt();
+			if (venue < 0 || venue >= venues.length || act < 0
+					|| act >= acts.length || session <= 0) {
+				throw new FormatException("Event " + (i + 1)
+						+ ": invalid event record");
+			}
+			events[i] = new Event(venues[venue], session, acts[act]);
+		}
+		// the line-up to be returned
+		LineUp lineUp = new LineUp();
+		try {
+			lineUp.addAll(Arrays.asList(events));
+		} catch (InvalidLineUpException e) {
+			throw new FormatException("more than one event scheduled for the"
+					+ " same time and session");
+		}
+
+		// the services
+		Service[] services = new Service[readCount(buffer, RECORD_SIZE,
+				"services")];
+		for (int i = 0; i < services.length; i++) {
+			// the source, destination and session of the service
+			int source = buffer.getInt();
+			int destination = buffer.getInt();
+			int session = buffer.getInt();
+			if (source < 0 || source >= venues.length || destination < 0
+					|| destination >= venues.length || session <= 0
+					|| venues[source].equals(venues[destination])) {
+				throw new FormatException("Service " + (i + 1)
+						+ ": invalid service record");
+			}
+			services[i] = new Service(venues[source], venues[destination],
+					session);
+		}
+		// the shuttle timetable to be returned
+		ShuttleTimetable timetable = new ShuttleTimetable();
+		timetable.addAll(Arrays.asList(services));
+		if (timetable.size() != services.length) {
+			throw new FormatException("duplicate service detected");
+		}
+		if (buffer.hasRemaining()) {
+			throw new FormatException("extra information at end of snapshot");
+		}
+		return new FestivalSnapshot(lineUp, timetable);
+	}
+
+	/**
+	 * Returns the index of key in the given table, adding it to the end of
+	 * the table if it is not already in it.
+	 */
+	private static <T> int indexOf(Map<T, Integer> table, T key) {
+		// the index of the key in the table
+		Integer index = table.get(key);
+		if (index == null) {
+			index = table.size();
+			table.put(key, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the number of bytes in the UTF-8 encoding of the string, and then
+	 * those bytes, to out.
+	 */
+	private static void writeString(DataOutputStream out, String string)
+			throws IOException {
+		// the encoded string
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString from the buffer.
+	 * 
+	 * @throws FormatException
+	 *             if the length of the string is invalid
+	 */
+	private static String readString(ByteBuffer buffer)
+			throws FormatException {
+		// the encoded string
+		byte[] bytes = new byte[readCount(buffer, 1, "bytes in a string")];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the number of items that follow in the buffer, and checks that
+	 * the buffer is large enough to hold them.
+	 * 
+	 * @param itemSize
+	 *            the smallest number of bytes that an item can take
+	 * @param items
+	 *            the name of the items, for the error message
+	 * @throws FormatException
+	 *             if the number is negative or too large
+	 */
+	private static int readCount(ByteBuffer buffer, int itemSize, String items)
+			throws FormatException {
+		// the number of items
+		int count = buffer.getInt();
+		if (count < 0 || (long) count * itemSize > buffer.remaining()) {
+			throw new FormatException("snapshot has an invalid number of "
+					+ items);
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,468 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable, compact representation of the shuttle services between venues
+ * at a festival.
+ * </p>
+ * 
+ * <p>
+ * The venues used by the services are numbered with dense indices local to
+ * the timetable, from 0 up to (but not including) the number of venues that
+ * the services use, in order of name. The services are stored in compressed
+ * sparse row form: there is one row for each pair of source venue and session
+ * at the end of which at least one service departs that venue, and the
+ * indices of the destinations of the services of a row are stored
+ * contiguously in a single array of primitive ints. The rows of each source
+ * venue are stored contiguously too, in order of session, so the row of a
+ * source and session is found by a binary search. This takes memory linear in
+ * the number of services and the venues they use (however large the session
+ * numbers are, and however many other venues exist), which is much less than
+ * one Service object per service, and since a frozen timetable can never
+ * change, it can be shared (for example between day planners and threads)
+ * without being copied.
+ * </p>
+ */
+public class FrozenTimetable implements Iterable<Service> {
+
+	// the venues used by the services, ordered by name, indexed by local index
+	private final Venue[] venues;
+	// the local index of each venue used by the services
+	private final Map<Venue, Integer> indices;
+	// the sessions at the end of which any service departs, in ascending order
+	private final int[] sessions;
+	// the index in rowSessions of the first row of each source venue, by index
+	private final int[] sourceOffsets;
+	// the session of each row
+	private final int[] rowSessions;
+	// the index in destinations of the first destination of each row
+	private final int[] rowOffsets;
+	// the local indices of the destinations of the services, grouped by row
+	private final int[] destinations;
+
+	/*
+	 * Invariant: no field is null && venues contains no null and is strictly
+	 * increasing by name && indices.size() == venues.length and maps venues[i]
+	 * to i && each venue in venues is the source or destination of a service
+	 * && sessions is strictly increasing and contains exactly the sessions of
+	 * the rows && sourceOffsets.length == venues.length + 1 &&
+	 * rowOffsets.length == rowSessions.length + 1 && sourceOffsets and
+	 * rowOffsets start at 0, are non-decreasing and end at rowSessions.length
+	 * and destinations.length respectively && the rows of the source venue
+	 * with index v are sourceOffsets[v] to sourceOffsets[v + 1] - 1, with
+	 * strictly increasing sessions && the destinations of row r are
+	 * destinations[rowOffsets[r]] to destinations[rowOffsets[r + 1] - 1], of
+	 * which there is at least one, in increasing order of index, each the
+	 * index of a venue that is distinct from the source of the row
+	 */
+
+	/**
+	 * Creates a frozen copy of the given shuttle timetable.
+	 * 
+	 * @param timetable
+	 *            the timetable to copy
+	 * @throws NullPointerException
+	 *             if timetable is null
+	 */
+	public FrozenTimetable(ShuttleTimetable timetable) {
+		if (timetable == null) {
+			throw new NullPointerException("Timetable cannot be null");
+		}
+		// the services of the timetable
+		Service[] services = new Service[timetable.size()];
+		// the venues used by the services
+		Set<Venue> used = new HashSet<>();
+		// the number of services copied so far
+		int count = 0;
+		for (Service service : timetable) {
+			services[count++] = service;
+			used.add(service.getSource());
+			used.add(service.getDestination());
+		}
+		venues = used.toArray(new Venue[used.size()]);
+		Arrays.sort(venues, new Comparator<Venue>() {
+			@Override
+			public int compare(Venue a, Venue b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		// the local index of each venue, while it is being built
+		Map<Venue, Integer> venueIndices = new HashMap<>();
+		for (int i = 0; i < venues.length; i++) {
+			venueIndices.put(venues[i], i);
+		}
+		indices = Collections.unmodifiableMap(venueIndices);
+		// the local indices of the source and destination of each service
+		int[] sources = new int[services.length];
+		int[] targets = new int[services.length];
+		// the services, ordered by source index, session and destination index
+		Integer[] order = new Integer[services.length];
+		for (int i = 0; i < services.length; i++) {
+			sources[i] = venueIndices.get(services[i].getSource());
+			targets[i] = venueIndices.get(services[i].getDestination());
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				// the result of comparing service a to service b
+				int result = Integer.compare(sources[a], sources[b]);
+				if (result == 0) {
+					result = Integer.compare(services[a].getSession(),
+							services[b].getSession());
+				}
+				if (result == 0) {
+					result = Integer.compare(targets[a], targets[b]);
+				}
+				return result;
+			}
+		});
+
+		sourceOffsets = new int[venues.length + 1];
+		destinations = new int[services.length];
+		// the sessions of the rows, and the sessions used by any row
+		int[] rows = new int[services.length];
+		int[] rowsUsed = new int[services.length];
+		// the index in destinations of the first destination of each row
+		int[] offsets = new int[services.length + 1];
+		int rowCount = 0; // the number of rows so far
+		for (int i = 0; i < services.length; i++) {
+			// the service, and the one before it in order
+			int service = order[i];
+			int previous = i == 0 ? -1 : order[i - 1];
+			destinations[i] = targets[service];
+			if (i == 0 || sources[service] != sources[previous]
+					|| services[service].getSession() != services[previous]
+							.getSession()) {
+				// the service starts a new row
+				sourceOffsets[sources[service] + 1]++;
+				offsets[rowCount] = i;
+				rowsUsed[rowCount] = services[service].getSession();
+				rows[rowCount++] = services[service].getSession();
+			}
+		}
+		offsets[rowCount] = services.length;
+		for (int v = 1; v < sourceOffsets.length; v++) {
+			sourceOffsets[v] += sourceOffsets[v - 1];
+		}
+		rowSessions = Arrays.copyOf(rows, rowCount);
+		rowOffsets = Arrays.copyOf(offsets, rowCount + 1);
+		// the distinct sessions of the rows, in ascending order
+		Arrays.sort(rowsUsed, 0, rowCount);
+		int distinct = 0; // the number of distinct sessions so far
+		for (int i = 0; i < rowCount; i++) {
+			if (i == 0 || rowsUsed[i] != rowsUsed[i - 1]) {
+				rowsUsed[distinct++] = rowsUsed[i];
+			}
+		}
+		sessions = Arrays.copyOf(rowsUsed, distinct);
+	}
+
+	/**
+	 * Returns true if the timetable contains a shuttle service equivalent to
+	 * the parameter service, and false otherwise.
+	 * 
+	 * @param service
+	 *            the service to be searched for
+	 * @return true iff the timetable contains a shuttle service equivalent to
+	 *         the given parameter.
+	 */
+	public boolean hasService(Service service) {
+		if (service == null) {
+			return false;
+		}
+		// the row of the source and session of the service
+		int row = getRow(getVenueIndex(service.getSource()), service
+				.getSession());
+		return row >= 0 && Arrays.binarySearch(destinations, rowOffsets[row],
+				rowOffsets[row + 1], getVenueIndex(service.getDestination()))
+				>= 0;
+	}
+
+	/**
+	 * Returns the number of services in the shuttle timetable.
+	 */
+	public int size() {
+		return destinations.length;
+	}
+
+	/**
+	 * Returns the set of venues that you can get to by catching an available
+	 * shuttle service from the source venue at the end of the given session.
+	 * 
+	 * @param source
+	 *            the source venue
+	 * @param session
+	 *            the session number
+	 * @return A new set of venues that can be reached by catching a single
+	 *         shuttle service from the source venue at the end of the given
+	 *         session.
+	 * 
+	 * @throws NullPointerException
+	 *             if source is null
+	 * @throws InvalidSessionException
+	 *             if the session number is not positive
+	 */
+	public Set<Venue> getDestinations(Venue source, int session) {
+		if (source == null) {
+			throw new NullPointerException("The source venue cannot be null");
+		}
+		if (session <= 0) {
+			throw new InvalidSessionException("Session number " + session
+					+ " must be positive");
+		}
+		// the local index of the source
+		int index = getVenueIndex(source);
+		// venues reachable from source at end of the session
+		Set<Venue> result = new HashSet<>();
+		for (int i = getStart(index, session), end = getEnd(index, session);
+				i < end; i++) {
+			result.add(venues[destinations[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new, mutable shuttle timetable with the same services as this
+	 * one.
+	 * 
+	 * @return a mutable copy of this timetable
+	 */
+	public ShuttleTimetable toShuttleTimetable() {
+		// the copy of this timetable
+		ShuttleTimetable timetable = new ShuttleTimetable();
+		for (Service service : this) {
+			timetable.addService(service);
+		}
+		return timetable;
+	}
+
+	/**
+	 * Returns an iterator over the services in the shuttle timetable, ordered
+	 * by source venue name, then session, then destination venue name. The
+	 * services are created as they are iterated over.
+	 */
+	@Override
+	public Iterator<Service> iterator() {
+		return new Iterator<Service>() {
+			// the source index and row of the next service, and its index in
+			// destinations
+			private int source = 0;
+			private int row = 0;
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < destinations.length;
+			}
+
+			@Override
+			public Service next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				while (rowOffsets[row + 1] <= index) {
+					row++;
+				}
+				while (sourceOffsets[source + 1] <= row) {
+					source++;
+				}
+				return new Service(venues[source],
+						venues[destinations[index++]], rowSessions[row]);
+			}
+		};
+	}
+
+	/**
+	 * Returns a string listing the services in the order of the iterator.
+	 */
+	@Override
+	public String toString() {
+		// the services in the timetable
+		List<Service> services = new ArrayList<>();
+		for (Service service : this) {
+			services.add(service);
+		}
+		return services.toString();
+	}
+
+	/**
+	 * Determines whether this FrozenTimetable is internally consistent (i.e.
+	 * it satisfies its class invariant).
+	 * 
+	 * @return true if this FrozenTimetable is internally consistent, and false
+	 *         otherwise.
+	 */
+	public boolean checkInvariant() {
+		if (venues == null || indices == null || sessions == null
+				|| sourceOffsets == null || rowSessions == null
+				|| rowOffsets == null || destinations == null
+				|| indices.size() != venues.length
+				|| sourceOffsets.length != venues.length + 1
+				|| rowOffsets.length != rowSessions.length + 1
+				|| sourceOffsets[0] != 0
+				|| sourceOffsets[venues.length] != rowSessions.length
+				|| rowOffsets[0] != 0
+				|| rowOffsets[rowSessions.length] != destinations.length) {
+			return false;
+		}
+		for (int i = 1; i < sessions.length; i++) {
+			if (sessions[i - 1] >= sessions[i]) {
+				return false;
+			}
+		}
+		// whether each venue is the source or destination of a service
+		boolean[] used = new boolean[venues.length];
+		for (int v = 0; v < venues.length; v++) {
+			if (venues[v] == null || !Integer.valueOf(v).equals(indices.get(
+					venues[v])) || (v > 0 && venues[v - 1].getName()
+							.compareTo(venues[v].getName()) >= 0)
+					|| sourceOffsets[v] > sourceOffsets[v + 1]) {
+				return false;
+			}
+			used[v] |= sourceOffsets[v] < sourceOffsets[v + 1];
+			for (int row = sourceOffsets[v]; row < sourceOffsets[v + 1];
+					row++) {
+				if ((row > sourceOffsets[v]
+						&& rowSessions[row - 1] >= rowSessions[row])
+						|| Arrays.binarySearch(sessions, rowSessions[row]) < 0
+						|| rowOffsets[row] >= rowOffsets[row + 1]) {
+					return false;
+				}
+				for (int i = rowOffsets[row]; i < rowOffsets[row + 1]; i++) {
+					if (destinations[i] == v || destinations[i] < 0
+							|| destinations[i] >= venues.length
+							|| (i > rowOffsets[row] && destinations[i - 1]
+									>= destinations[i])) {
+						return false;
+					}
+					used[destinations[i]] = true;
+				}
+			}
+		}
+		for (boolean isUsed : used) {
+			if (!isUsed) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the last session that any service departs at the end of, or 0 if
+	 * there are no services.
+	 */
+	int getLastSession() {
+		return sessions.length == 0 ? 0 : sessions[sessions.length - 1];
+	}
+
+	/**
+	 * Returns the number of distinct sessions that services depart at the end
+	 * of.
+	 */
+	int getSessionCount() {
+		return sessions.length;
+	}
+
+	/**
+	 * Returns the session with the given index among the distinct sessions
+	 * that services depart at the end of, in ascending order.
+	 * 
+	 * @require 0 <= index < getSessionCount()
+	 */
+	int getSession(int index) {
+		return sessions[index];
+	}
+
+	/**
+	 * Returns the number of distinct sessions that services depart at the end
+	 * of that are before the given session (which is the index of the first
+	 * such session that is not before it).
+	 */
+	int getSessionIndex(int session) {
+		// the result of searching for the session
+		int index = Arrays.binarySearch(sessions, session);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	/**
+	 * Returns the number of venues used by the services (as the source or
+	 * destination of at least one of them). Their local indices are 0 to one
+	 * less than this number.
+	 */
+	int getVenueCount() {
+		return venues.length;
+	}
+
+	/**
+	 * Returns the venue with the given local index.
+	 * 
+	 * @require 0 <= index < getVenueCount()
+	 */
+	Venue getVenue(int index) {
+		return venues[index];
+	}
+
+	/**
+	 * Returns the local index of the given venue, or -1 if no service uses it.
+	 * 
+	 * @require venue != null
+	 */
+	int getVenueIndex(Venue venue) {
+		// the local index of the venue, if it is used
+		Integer index = indices.get(venue);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the first destination of the services departing
+	 * the venue with the given local index at the end of the given session.
+	 * 
+	 * @require index < getVenueCount() && session > 0
+	 */
+	int getStart(int index, int session) {
+		// the row of the venue and session
+		int row = getRow(index, session);
+		return row < 0 ? 0 : rowOffsets[row];
+	}
+
+	/**
+	 * Returns one more than the index of the last destination of the services
+	 * departing the venue with the given local index at the end of the given
+	 * session. (This is equal to getStart(index, session) if there are none.)
+	 * 
+	 * @require index < getVenueCount() && session > 0
+	 */
+	int getEnd(int index, int session) {
+		// the row of the venue and session
+		int row = getRow(index, session);
+		return row < 0 ? 0 : rowOffsets[row + 1];
+	}
+
+	/**
+	 * Returns the local venue index of the destination at the given index.
+	 * 
+	 * @require getStart(v, t) <= index < getEnd(v, t) for some v and t
+	 */
+	int getDestinationIndex(int index) {
+		return destinations[index];
+	}
+
+	/**
+	 * Returns the row of the venue with the given local index (or a negative
+	 * index, for a venue that is not used) and the given session, or -1 if no
+	 * services depart the venue at the end of the session.
+	 */
+	private int getRow(int index, int session) {
+		if (index < 0) {
+			return -1;
+		}
+		// the result of searching the rows of the venue for the session
+		int row = Arrays.binarySearch(rowSessions, sourceOffsets[index],
+				sourceOffsets[index + 1], session);
+		return row < 0 ? -1 : row;
+	}
+
+}
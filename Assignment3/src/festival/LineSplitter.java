@@ -0,0 +1,136 @@
+package festival;
+
+import java.io.*;
+
+/**
+ * <p>
+ * Splits the characters from a reader into lines, without allocating a string
+ * for each line.
+ * </p>
+ * 
+ * <p>
+ * Lines are split in the same places as by Scanner.nextLine: a line ends at
+ * "\r\n", or at any one of '\n', '\r', U+2028, U+2029 and U+0085.
+ * The last line need not be terminated, but an empty last line without a
+ * terminator is not a line.
+ * </p>
+ */
+final class LineSplitter implements Closeable {
+
+	// the size of the buffer of characters read from the reader
+	private static final int BUFFER_SIZE = 8192;
+
+	// the reader that the characters come from
+	private final Reader in;
+	// the characters read from the reader, and the bounds of those unused
+	private final char[] buffer;
+	private int position;
+	private int limit;
+	// the characters of the current line, and their number
+	private char[] line;
+	private int length;
+	// true if the last line ended with '\r', so a following '\n' is skipped
+	private boolean skipLineFeed;
+
+	/*
+	 * Invariant: in != null && buffer != null && 0 <= position <= limit <=
+	 * buffer.length && line != null && 0 <= length <= line.length
+	 */
+
+	/**
+	 * @require in != null
+	 * @ensure Creates a line splitter for the characters from the reader.
+	 */
+	LineSplitter(Reader in) {
+		this.in = in;
+		buffer = new char[BUFFER_SIZE];
+		line = new char[128];
+	}
+
+	/**
+	 * Reads the next line. Its characters (without the line terminator) are
+	 * then available from getLine and getLength, until the next call.
+	 * 
+	 * @return true if there was another line, and false at the end of input
+	 * @throws IOException
+	 *             if there is an error reading from the reader
+	 */
+	boolean nextLine() throws IOException {
+		length = 0;
+		if (skipLineFeed) {
+			skipLineFeed = false;
+			if (fill() && buffer[position] == '\n') {
+				position++;
+			}
+		}
+		// whether any characters (including a terminator) have been consumed
+		boolean consumed = false;
+		while (fill()) {
+			consumed = true;
+			// the first unused character
+			char c = buffer[position++];
+			switch (c) {
+			case '\r':
+				skipLineFeed = true;
+				return true;
+			case '\n':
+			case '\u2028':
+			case '\u2029':
+			case '\u0085':
+				return true;
+			default:
+				if (length == line.length) {
+					char[] grown = new char[line.length * 2];
+					System.arraycopy(line, 0, grown, 0, length);
+					line = grown;
+				}
+				line[length++] = c;
+			}
+		}
+		return consumed;
+	}
+
+	/**
+	 * Returns the buffer holding the characters of the current line, in
+	 * positions 0 to getLength() - 1. The buffer is reused for the next line.
+	 */
+	char[] getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the number of characters in the current line.
+	 */
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * Closes the underlying reader.
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Makes sure that there is at least one unused character in the buffer,
+	 * unless the end of input has been reached.
+	 * 
+	 * @return true if there is an unused character in the buffer, and false at
+	 *         the end of input
+	 */
+	private boolean fill() throws IOException {
+		while (position == limit) {
+			// the number of characters read
+			int read = in.read(buffer, 0, buffer.length);
+			if (read < 0) {
+				return false;
+			}
+			position = 0;
+			limit = read;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,191 @@
+package festival;
+
+import java.io.IOException;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * <p>
+ * Splits the lines from a LineSplitter into whitespace-separated tokens.
+ * </p>
+ * 
+ * <p>
+ * Tokens and integers are recognised as they are by a Scanner with its
+ * default delimiter and locale: tokens are separated by runs of characters
+ * for which Character.isWhitespace is true, and an integer token is an
+ * optional '+' or '-' followed by decimal digits (which may be grouped with
+ * the grouping separator of the default locale) that fits in an int.
+ * </p>
+ */
+final class LineTokenizer {
+
+	// the lines to tokenize
+	private final LineSplitter in;
+	// the grouping separator for integers in the default locale
+	private final char groupingSeparator;
+	// the characters of the current line, and their number
+	private char[] line;
+	private int length;
+	// the bounds of the next token, if found, and the end of the last token
+	private int start;
+	private int end;
+	private int position;
+	// true if the next token has been found, and is an int
+	private boolean found;
+	private boolean isInt;
+	// the value of the next token, if it is an int
+	private int value;
+
+	/*
+	 * Invariant: in != null && 0 <= position <= length && if found, then
+	 * position <= start < end <= length and line[start..end) is the next
+	 * token
+	 */
+
+	/**
+	 * @require in != null
+	 * @ensure Creates a tokenizer for the lines of in, positioned before the
+	 *         first line.
+	 */
+	LineTokenizer(LineSplitter in) {
+		this.in = in;
+		groupingSeparator = DecimalFormatSymbols.getInstance(
+				Locale.getDefault(Locale.Category.FORMAT))
+				.getGroupingSeparator();
+	}
+
+	/**
+	 * Moves on to the next line of input.
+	 * 
+	 * @return true if there was another line, and false at the end of input
+	 * @throws IOException
+	 *             if there is an error reading the input
+	 */
+	boolean nextLine() throws IOException {
+		if (!in.nextLine()) {
+			return false;
+		}
+		line = in.getLine();
+		length = in.getLength();
+		position = 0;
+		found = false;
+		return true;
+	}
+
+	/**
+	 * Returns true if the current line has no characters at all.
+	 * 
+	 * @require nextLine() has returned true
+	 */
+	boolean isLineEmpty() {
+		return length == 0;
+	}
+
+	/**
+	 * Returns true if there is another token on the current line.
+	 * 
+	 * @require nextLine() has returned true
+	 */
+	boolean hasNext() {
+		if (!found) {
+			start = position;
+			while (start < length && Character.isWhitespace(line[start])) {
+				start++;
+			}
+			if (start == length) {
+				return false;
+			}
+			end = start;
+			while (end < length && !Character.isWhitespace(line[end])) {
+				end++;
+			}
+			found = true;
+			isInt = parseInt();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if there is another token on the current line, and it is
+	 * an int.
+	 * 
+	 * @require nextLine() has returned true
+	 */
+	boolean hasNextInt() {
+		return hasNext() && isInt;
+	}
+
+	/**
+	 * Returns the next token on the current line.
+	 * 
+	 * @require hasNext()
+	 */
+	String next() {
+		hasNext();
+		found = false;
+		position = end;
+		return new String(line, start, end - start);
+	}
+
+	/**
+	 * Returns the value of the next token on the current line.
+	 * 
+	 * @require hasNextInt()
+	 */
+	int nextInt() {
+		hasNext();
+		found = false;
+		position = end;
+		return value;
+	}
+
+	/**
+	 * Determines whether line[start..end) is an int, and if so sets value to
+	 * it.
+	 * 
+	 * @return true if the token is an int, and false otherwise
+	 */
+	private boolean parseInt() {
+		// the position of the next character of the token to parse
+		int i = start;
+		// whether the value is negative
+		boolean negative = line[i] == '-';
+		if (line[i] == '+' || line[i] == '-') {
+			i++;
+		}
+		// the magnitude of the value, and the number of digits in it
+		long magnitude = 0;
+		int digits = 0;
+		// the number of digits in the current group, or -1 if not grouped
+		int groupDigits = -1;
+		// true if the first digit is an ASCII zero (which cannot be grouped)
+		boolean leadingZero = i < end && line[i] == '0';
+		for (; i < end; i++) {
+			if (line[i] == groupingSeparator) {
+				if (groupDigits < 0 ? digits == 0 || digits > 3 || leadingZero
+						: groupDigits != 3) {
+					return false;
+				}
+				groupDigits = 0;
+			} else if (Character.isDigit(line[i])) {
+				magnitude = Math.min(magnitude * 10
+						+ Character.digit(line[i], 10), 1L << 32);
+				digits++;
+				if (groupDigits >= 0) {
+					groupDigits++;
+				}
+			} else {
+				return false;
+			}
+		}
+		if (digits == 0 || (groupDigits >= 0 && groupDigits != 3)) {
+			return false;
+		}
+		if (magnitude > (negative ? 1L << 31 : Integer.MAX_VALUE)) {
+			return false;
+		}
+		value = (int) (negative ? -magnitude : magnitude);
+		return true;
+	}
+
+}
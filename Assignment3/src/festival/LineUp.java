@@ -1,6 +1,10 @@
 package festival;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * <p>
@@ -31,11 +35,55 @@ public class LineUp implements Iterable<Event> {
 	private static String LINE_SEPARATOR = System.getProperty("line.separator");
 
 	// the events in the line-up
-	private List<Event> events;
+	private ArrayList<Event> events;
+	// the events in the line-up, indexed by venue and then by session
+	private Map<Venue, Map<Integer, Event>> venueIndex;
+	/*
+	 * the events in the line-up, indexed by session (in ascending order) and
+	 * then by venue
+	 */
+	private NavigableMap<Integer, Map<Venue, Event>> sessionIndex;
+	/*
+	 * the events in the line-up, indexed by act for searching (or null until
+	 * the line-up is first searched by act)
+	 */
+	private ActIndex actIndex;
+	// the number of changes made to the events of the line-up
+	private int modCount;
+	// the value of modCount when the cached views were last valid
+	private int viewModCount;
+	// cached read-only, sorted views of the events of each venue and session
+	private Map<Venue, List<Event>> venueViews;
+	private Map<Integer, List<Event>> sessionViews;
+	// the listeners told about changes to the events of the line-up
+	private List<LineUpListener> listeners;
+	// whether the invariant is tracked as events are added and removed
+	private boolean tracking;
+	/*
+	 * the number of events in each of the indexes, counted from the sizes of
+	 * their maps as they change (while tracking)
+	 */
+	private int venueIndexCount;
+	private int sessionIndexCount;
+	/*
+	 * false if a change has been seen to leave the indexes inconsistent with
+	 * the events (while tracking)
+	 */
+	private boolean trackedConsistent;
 
 	/*
 	 * Invariant: events!=null && !events.contains(null) && there are no two
-	 * events scheduled in the same venue for the same session
+	 * events scheduled in the same venue for the same session &&
+	 * venueIndex!=null && sessionIndex!=null && for each event e in events,
+	 * venueIndex.get(e.getVenue()).get(e.getSession()) == e and
+	 * sessionIndex.get(e.getSession()).get(e.getVenue()) == e, and the indexes
+	 * contain no other events and no empty maps && actIndex is null or
+	 * indexes exactly the events in events && venueViews != null &&
+	 * sessionViews != null && if viewModCount == modCount, each view in
+	 * venueViews and sessionViews is a sorted list of the events of its venue
+	 * or session && listeners != null && !listeners.contains(null) && if
+	 * tracking, trackedConsistent and venueIndexCount and sessionIndexCount
+	 * are the number of events in venueIndex and sessionIndex
 	 */
 
 	/**
@@ -43,6 +91,11 @@ public class LineUp implements Iterable<Event> {
 	 */
 	public LineUp() {
 		events = new ArrayList<>();
+		venueIndex = new HashMap<>();
+		sessionIndex = new TreeMap<>();
+		venueViews = new HashMap<>();
+		sessionViews = new HashMap<>();
+		listeners = new CopyOnWriteArrayList<>();
 	}
 
 	/**
@@ -68,6 +121,126 @@ public class LineUp implements Iterable<Event> {
 							+ event.getSession());
 		}
 		events.add(event);
+		index(event);
+		modCount++;
+		for (LineUpListener listener : listeners) {
+			listener.eventAdded(this, event);
+		}
+	}
+
+	/**
+	 * Adds all of the given events to the line-up, or none of them.
+	 * 
+	 * The events are checked for nulls and for clashes (with each other and
+	 * with the events already in the line-up) in a single hashed pass before
+	 * any of them are added, and the storage of the line-up is grown once to
+	 * fit them all, so loading n events takes time linear in n.
+	 * 
+	 * @param events
+	 *            the events to be added to the line-up
+	 * @throws NullPointerException
+	 *             if events is null or contains null (in which case the line-up
+	 *             is unchanged)
+	 * @throws InvalidLineUpException
+	 *             if two of the events, or one of the events and an event
+	 *             already in the line-up, are scheduled for the same venue and
+	 *             session (in which case the line-up is unchanged)
+	 */
+	public void addAll(Collection<? extends Event> events) {
+		if (events == null) {
+			throw new NullPointerException(
+					"Cannot add a null collection of events to a line-up.");
+		}
+		// the venues of the events, numbered for their slot keys
+		VenueRegistry venues = new VenueRegistry();
+		// the venue ids and sessions of the events checked so far
+		Set<Long> slots = new HashSet<>(events.size() * 4 / 3 + 1);
+		for (Event event : events) {
+			if (event == null) {
+				throw new NullPointerException(
+						"Cannot add a null event to a line-up.");
+			}
+			if (sessionTaken(event.getVenue(), event.getSession())
+					|| !slots.add(((long) venues.register(event
+							.getVenue()) << 32) | event.getSession())) {
+				throw new InvalidLineUpException(
+						"Line up already includes an event at venue "
+								+ event.getVenue() + " at time "
+								+ event.getSession());
+			}
+		}
+		this.events.ensureCapacity(this.events.size() + events.size());
+		for (Event event : events) {
+			this.events.add(event);
+			index(event);
+		}
+		modCount++;
+		for (Event event : events) {
+			for (LineUpListener listener : listeners) {
+				listener.eventAdded(this, event);
+			}
+		}
+	}
+
+	/**
+	 * Adds all of the events in the given stream to the line-up, or none of
+	 * them, as for addAll(Collection).
+	 * 
+	 * @param events
+	 *            the stream of events to be added to the line-up
+	 * @throws NullPointerException
+	 *             if events is null or contains null (in which case the line-up
+	 *             is unchanged)
+	 * @throws InvalidLineUpException
+	 *             if two of the events, or one of the events and an event
+	 *             already in the line-up, are scheduled for the same venue and
+	 *             session (in which case the line-up is unchanged)
+	 */
+	public void addAll(Stream<? extends Event> events) {
+		if (events == null) {
+			throw new NullPointerException(
+					"Cannot add a null stream of events to a line-up.");
+		}
+		addAll(events.collect(Collectors.<Event> toList()));
+	}
+
+	/**
+	 * Adds the given event to the venue, session and act indexes (the last
+	 * only if it has been built).
+	 * 
+	 * @require event != null && the event is in events && the venue of the
+	 *          event is not taken in its session in the indexes
+	 * @ensure the event is in the venue and session indexes, and in the act
+	 *         index if there is one
+	 */
+	private void index(Event event) {
+		// the events at the venue of the event, indexed by session
+		Map<Integer, Event> venueEvents = venueIndex.get(event.getVenue());
+		if (venueEvents == null) {
+			venueEvents = new HashMap<>();
+			venueIndex.put(event.getVenue(), venueEvents);
+		}
+		// the number of events at the venue before the event is indexed
+		int venueSize = venueEvents.size();
+		venueEvents.put(event.getSession(), event);
+		// the events in the session of the event, indexed by venue
+		Map<Venue, Event> sessionEvents = sessionIndex.get(event.getSession());
+		if (sessionEvents == null) {
+			sessionEvents = new HashMap<>();
+			sessionIndex.put(event.getSession(), sessionEvents);
+		}
+		// the number of events in the session before the event is indexed
+		int sessionSize = sessionEvents.size();
+		sessionEvents.put(event.getVenue(), event);
+		if (tracking) {
+			venueIndexCount += venueEvents.size() - venueSize;
+			sessionIndexCount += sessionEvents.size() - sessionSize;
+			trackedConsistent &= venueEvents.get(event.getSession()) == event
+					&& sessionEvents.get(event.getVenue()) == event;
+		}
+		if (actIndex != null) {
+			actIndex.add(event);
+		}
 	}
 
 	/**
@@ -82,12 +255,24 @@ public class LineUp implements Iterable<Event> {
 	 *         and session.
 	 */
 	private boolean sessionTaken(Venue venue, int session) {
-		for (Event e : events) {
-			if (e.getVenue().equals(venue) && e.getSession() == session) {
-				return true;
-			}
-		}
-		return false;
+		return getEvent(venue, session) != null;
+	}
+
+	/**
+	 * Returns the event scheduled for the given venue and session, or null if
+	 * there is none.
+	 * 
+	 * @param venue
+	 *            the venue of the event
+	 * @param session
+	 *            the session of the event
+	 * @return the event scheduled for the given venue and session, or null if
+	 *         there is no such event.
+	 */
+	public Event getEvent(Venue venue, int session) {
+		// the events at the venue, indexed by session
+		Map<Integer, Event> venueEvents = venueIndex.get(venue);
+		return venueEvents == null ? null : venueEvents.get(session);
 	}
 
 	/**
@@ -99,17 +284,78 @@ public class LineUp implements Iterable<Event> {
 	 *            the event to be removed from the line-up.
 	 */
 	public void removeEvent(Event event) {
-		events.remove(event);
+		if (event == null || !event.equals(getEvent(event.getVenue(),
+				event.getSession()))) {
+			return;
+		}
+		// whether an equivalent event was found in the events
+		boolean removed = events.remove(event);
+		modCount++;
+		// the events at the venue of the event, indexed by session
+		Map<Integer, Event> venueEvents = venueIndex.get(event.getVenue());
+		venueEvents.remove(event.getSession());
+		if (venueEvents.isEmpty()) {
+			venueIndex.remove(event.getVenue());
+		}
+		// the events in the session of the event, indexed by venue
+		Map<Venue, Event> sessionEvents = sessionIndex.get(event.getSession());
+		// the event removed from the session index, if any
+		Event sessionRemoved = sessionEvents == null ? null : sessionEvents
+				.remove(event.getVenue());
+		if (sessionEvents != null && sessionEvents.isEmpty()) {
+			sessionIndex.remove(event.getSession());
+		}
+		if (tracking) {
+			venueIndexCount--;
+			sessionIndexCount -= sessionRemoved == null ? 0 : 1;
+			trackedConsistent &= removed && event.equals(sessionRemoved);
+		}
+		if (actIndex != null) {
+			actIndex.remove(event);
+		}
+		for (LineUpListener listener : listeners) {
+			listener.eventRemoved(this, event);
+		}
+	}
+
+	/**
+	 * Registers a listener to be told about each event that is added to or
+	 * removed from the line-up (see LineUpListener). The listener may add or
+	 * remove listeners while it is being notified.
+	 * 
+	 * @param listener
+	 *            the listener to register
+	 * @throws NullPointerException
+	 *             if listener is null
+	 */
+	public void addLineUpListener(LineUpListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("Listener cannot be null");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters the given listener, if it is registered with this line-up.
+	 * 
+	 * @param listener
+	 *            the listener to unregister
+	 */
+	public void removeLineUpListener(LineUpListener listener) {
+		listeners.remove(listener);
 	}
 
 	/**
 	 * Returns a list of the events scheduled for the given venue. The list of
 	 * events should be ordered by session number (in ascending order).
 	 * 
+	 * The list is read-only, and is cached until the line-up is next changed,
+	 * so repeated calls for the same venue do not sort the events again.
+	 * 
 	 * @param venue
 	 *            the venue for which the events will be retrieved
-	 * @return a list of the events scheduled for the given venue, ordered by
-	 *         session number
+	 * @return a read-only list of the events scheduled for the given venue,
+	 *         ordered by session number
 	 * @throws NullPointerException
 	 *             if the given venue is null
 	 */
@@ -118,14 +364,20 @@ public class LineUp implements Iterable<Event> {
 			throw new NullPointerException(
 					"Cannot retrieve events for a null venue.");
 		}
+		validateViews();
 		// the events for the given venue
-		List<Event> venueEvents = new ArrayList<>();
-		for (Event e : events) {
-			if (venue.equals(e.getVenue())) {
-				venueEvents.add(e);
+		List<Event> venueEvents = venueViews.get(venue);
+		if (venueEvents == null) {
+			// the events for the given venue, indexed by session
+			Map<Integer, Event> indexed = venueIndex.get(venue);
+			if (indexed == null) {
+				return Collections.emptyList();
 			}
+			venueEvents = new ArrayList<>(indexed.values());
+			Collections.sort(venueEvents);
+			venueEvents = Collections.unmodifiableList(venueEvents);
+			venueViews.put(venue, venueEvents);
 		}
-		Collections.sort(venueEvents);
 		return venueEvents;
 	}
 
@@ -134,9 +386,13 @@ public class LineUp implements Iterable<Event> {
 	 * all venues). The list should be ordered by venue name (in ascending
 	 * order).
 	 * 
+	 * The list is read-only, and is cached until the line-up is next changed,
+	 * so repeated calls for the same session do not sort the events again.
+	 * 
 	 * @param session
 	 *            the session to retrieve the events for
-	 * @return A list of the events scheduled for the given session time.
+	 * @return A read-only list of the events scheduled for the given session
+	 *         time.
 	 * @throws InvalidSessionException
 	 *             if session <= 0
 	 */
@@ -145,17 +401,96 @@ public class LineUp implements Iterable<Event> {
 			throw new InvalidSessionException("Session number " + session
 					+ " must be positive");
 		}
+		validateViews();
 		// the events for the given session
-		List<Event> sessionEvents = new ArrayList<>();
-		for (Event e : events) {
-			if (session == e.getSession()) {
-				sessionEvents.add(e);
+		List<Event> sessionEvents = sessionViews.get(session);
+		if (sessionEvents == null) {
+			// the events for the given session, indexed by venue
+			Map<Venue, Event> indexed = sessionIndex.get(session);
+			if (indexed == null) {
+				return Collections.emptyList();
 			}
+			sessionEvents = new ArrayList<>(indexed.values());
+			Collections.sort(sessionEvents);
+			sessionEvents = Collections.unmodifiableList(sessionEvents);
+			sessionViews.put(session, sessionEvents);
 		}
-		Collections.sort(sessionEvents);
 		return sessionEvents;
 	}
 
+	/**
+	 * Discards the cached views of the events of each venue and session if
+	 * the line-up has changed since they were cached.
+	 */
+	private void validateViews() {
+		if (viewModCount != modCount) {
+			venueViews.clear();
+			sessionViews.clear();
+			viewModCount = modCount;
+		}
+	}
+
+	/**
+	 * Returns a list of the events whose acts start with the given prefix,
+	 * ignoring case. The list is ordered using the natural ordering of events.
+	 * 
+	 * The events are found using an index of the acts in the line-up, so the
+	 * time taken depends on the number of matching events rather than the
+	 * size of the line-up. (The index is built by the first search by act,
+	 * and kept up to date from then on, so a line-up that is never searched
+	 * by act does not pay to maintain it.)
+	 * 
+	 * @param prefix
+	 *            the start of the acts to search for
+	 * @return a new list of the events whose acts start with the prefix
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public List<Event> findEventsByActPrefix(String prefix) {
+		if (prefix == null) {
+			throw new NullPointerException("Cannot search for a null prefix.");
+		}
+		return getActIndex().findByPrefix(prefix);
+	}
+
+	/**
+	 * Returns a list of the events whose acts contain the given string,
+	 * ignoring case. The list is ordered using the natural ordering of events.
+	 * 
+	 * The events are found using an index of the three-character substrings
+	 * of the acts in the line-up, so only acts that contain every such
+	 * substring of the query are compared against it. (Queries of fewer than
+	 * three characters are compared against each distinct act. The index is
+	 * built as for findEventsByActPrefix.)
+	 * 
+	 * @param substring
+	 *            the part of the acts to search for
+	 * @return a new list of the events whose acts contain the substring
+	 * @throws NullPointerException
+	 *             if substring is null
+	 */
+	public List<Event> findEventsByAct(String substring) {
+		if (substring == null) {
+			throw new NullPointerException(
+					"Cannot search for a null substring.");
+		}
+		return getActIndex().findBySubstring(substring);
+	}
+
+	/**
+	 * Returns the act index of the line-up, building it from the events of
+	 * the line-up if it has not been built yet.
+	 */
+	private ActIndex getActIndex() {
+		if (actIndex == null) {
+			actIndex = new ActIndex();
+			for (Event event : events) {
+				actIndex.add(event);
+			}
+		}
+		return actIndex;
+	}
+
 	/**
 	 * Returns a set of all the venues where at least one event from the line-up
 	 * takes place.
@@ -163,11 +498,7 @@ public class LineUp implements Iterable<Event> {
 	 * @return The venues where events from the line-up will take place.
 	 */
 	public Set<Venue> getVenues() {
-		Set<Venue> venues = new HashSet<>(); // venues used by the line-up
-		for (Event e : events) {
-			venues.add(e.getVenue());
-		}
-		return venues;
+		return new HashSet<>(venueIndex.keySet());
 	}
 
 	/**
@@ -175,21 +506,14 @@ public class LineUp implements Iterable<Event> {
 	 * number of the first session where there is an event scheduled. Otherwise
 	 * it returns 0.
 	 * 
+	 * (The sessions that are used are kept in order as events are added and
+	 * removed, so this does not search the events.)
+	 * 
 	 * @return If there is at least one event scheduled, then the first session
 	 *         number that an event is scheduled for, and 0 otherwise.
 	 */
 	public int getFirstUsedSession() {
-		if (events.isEmpty()) {
-			return 0;
-		}
-		// the minimum session number that there is an event scheduled for
-		int result = events.get(0).getSession();
-		for (Event e : events) {
-			if (e.getSession() < result) {
-				result = e.getSession();
-			}
-		}
-		return result;
+		return sessionIndex.isEmpty() ? 0 : sessionIndex.firstKey();
 	}
 
 	/**
@@ -197,29 +521,61 @@ public class LineUp implements Iterable<Event> {
 	 * number of the last session where there is an event scheduled. Otherwise
 	 * it returns 0.
 	 * 
+	 * (The sessions that are used are kept in order as events are added and
+	 * removed, so this does not search the events.)
+	 * 
 	 * @return If there is at least one event scheduled, then the last session
 	 *         number that an event is scheduled for, and 0 otherwise.
 	 */
 	public int getLastUsedSession() {
-		if (events.isEmpty()) {
-			return 0;
+		return sessionIndex.isEmpty() ? 0 : sessionIndex.lastKey();
+	}
+
+	/**
+	 * Returns the number of events scheduled for the given session.
+	 * 
+	 * @param session
+	 *            the session to count the events of
+	 * @return the number of events scheduled for the given session
+	 * @throws InvalidSessionException
+	 *             if session <= 0
+	 */
+	public int getEventCount(int session) {
+		if (session <= 0) {
+			throw new InvalidSessionException("Session number " + session
+					+ " must be positive");
 		}
-		// the maximum session number that there is an event scheduled for
-		int result = events.get(0).getSession();
-		for (Event e : events) {
-			if (e.getSession() > result) {
-				result = e.getSession();
-			}
+		// the events for the given session, indexed by venue
+		Map<Venue, Event> indexed = sessionIndex.get(session);
+		return indexed == null ? 0 : indexed.size();
+	}
+
+	/**
+	 * Returns a histogram of the number of events scheduled for each session:
+	 * a map from each session that at least one event is scheduled for, to the
+	 * number of events scheduled for that session, ordered by session number.
+	 * 
+	 * The histogram is read from the session index, so it takes time linear in
+	 * the number of sessions used, not the number of events.
+	 * 
+	 * @return a new map from each used session to its number of events.
+	 */
+	public SortedMap<Integer, Integer> getSessionCounts() {
+		// the number of events in each session
+		SortedMap<Integer, Integer> counts = new TreeMap<>();
+		for (Map.Entry<Integer, Map<Venue, Event>> entry : sessionIndex
+				.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().size());
 		}
-		return result;
+		return counts;
 	}
 
 	/**
-	 * Returns an iterator over the events in the line-up.
+	 * Returns a read-only iterator over the events in the line-up.
 	 */
 	@Override
 	public Iterator<Event> iterator() {
-		return events.iterator();
+		return Collections.unmodifiableList(events).iterator();
 	}
 
 	/**
@@ -234,42 +590,170 @@ public class LineUp implements Iterable<Event> {
 	 */
 	@Override
 	public String toString() {
-		Collections.sort(events);
-		String result = ""; // the string representation under construction
-		for (int i = 0; i < events.size(); i++) {
+		// the string representation under construction
+		StringBuilder result = new StringBuilder();
+		try {
+			write(result);
+		} catch (IOException e) {
+			// a StringBuilder never throws an IOException
+			throw new UncheckedIOException(e);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Writes the string representation of the line-up (as described for
+	 * toString) to the given output, one event at a time.
+	 * 
+	 * The events are sorted in a copy, so the line-up itself is not reordered,
+	 * and the output is appended to directly rather than built up as a string.
+	 * 
+	 * @param out
+	 *            the output to write the line-up to (e.g. a Writer or
+	 *            StringBuilder)
+	 * @throws IOException
+	 *             if there is an error writing to the output
+	 * @throws NullPointerException
+	 *             if out is null
+	 */
+	public void write(Appendable out) throws IOException {
+		if (out == null) {
+			throw new NullPointerException("Cannot write to a null output.");
+		}
+		// the events in the line-up, in their natural ordering
+		Event[] sorted = events.toArray(new Event[events.size()]);
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
 			if (i != 0) {
-				result += LINE_SEPARATOR;
+				out.append(LINE_SEPARATOR);
 			}
-			result = result + events.get(i).toString();
+			out.append(sorted[i].toString());
 		}
-		return result;
 	}
 
 	/**
 	 * Determines whether this LineUp is internally consistent (i.e. it
 	 * satisfies its class invariant).
 	 * 
+	 * This takes time linear in the number of events: the events are checked
+	 * for nulls and clashes in a single hashed pass, and then compared
+	 * against the indexes. (The act index, if it has been built, is only
+	 * checked to hold as many events as the line-up.)
+	 * 
 	 * @return true if this LineUp is internally consistent, and false
 	 *         otherwise.
 	 */
 	public boolean checkInvariant() {
-		return (events != null && !events.contains(null) && !eventsClash());
+		return (events != null && !eventsClash() && indexesMatch()
+				&& (actIndex == null || actIndex.size() == events.size())
+				&& listeners != null && !listeners.contains(null));
 	}
 
 	/**
-	 * Returns true if there are two or more events scheduled for both the same
-	 * venue and session time.
+	 * Turns tracking of the invariant on or off.
+	 * 
+	 * While the invariant is tracked, each change to the line-up checks the
+	 * index entries that it touches, and the number of events in each index
+	 * is counted from the sizes of its maps as they change. A change that
+	 * leaves the indexes inconsistent with the events (for example, an event
+	 * whose venue or session changes while it is being indexed, so that it
+	 * replaces another event) is then detected by checkTrackedInvariant
+	 * without re-checking every event. Turning tracking on checks the whole
+	 * line-up once, in linear time.
 	 * 
-	 * @return true if there are two or more events occurring at the same venue
-	 *         at the same time
+	 * @param tracked
+	 *            true to track the invariant, and false to stop tracking it
+	 */
+	public void setInvariantTracked(boolean tracked) {
+		if (tracked && !tracking) {
+			trackedConsistent = checkInvariant();
+			venueIndexCount = 0;
+			for (Map<Integer, Event> venueEvents : venueIndex.values()) {
+				venueIndexCount += venueEvents.size();
+			}
+			sessionIndexCount = 0;
+			for (Map<Venue, Event> sessionEvents : sessionIndex.values()) {
+				sessionIndexCount += sessionEvents.size();
+			}
+		}
+		tracking = tracked;
+	}
+
+	/**
+	 * Determines whether this LineUp is internally consistent, in constant
+	 * time if the invariant is being tracked (see setInvariantTracked), and
+	 * as for checkInvariant otherwise.
+	 * 
+	 * @return true if this LineUp is internally consistent, as far as can be
+	 *         told from the changes made to it, and false otherwise.
+	 */
+	public boolean checkTrackedInvariant() {
+		if (!tracking) {
+			return checkInvariant();
+		}
+		return (trackedConsistent && venueIndexCount == events.size()
+				&& sessionIndexCount == events.size());
+	}
+
+	/**
+	 * Returns true if the venue and session indexes contain exactly the
+	 * events in the line-up, each under its own venue and session, and
+	 * contain no empty maps.
+	 * 
+	 * @return true if the indexes match the events in the line-up
+	 */
+	private boolean indexesMatch() {
+		if (venueIndex == null || sessionIndex == null) {
+			return false;
+		}
+		// the number of events in each index
+		int venueCount = 0;
+		int sessionCount = 0;
+		for (Map<Integer, Event> venueEvents : venueIndex.values()) {
+			if (venueEvents.isEmpty()) {
+				return false;
+			}
+			venueCount += venueEvents.size();
+		}
+		for (Map<Venue, Event> sessionEvents : sessionIndex.values()) {
+			if (sessionEvents.isEmpty()) {
+				return false;
+			}
+			sessionCount += sessionEvents.size();
+		}
+		if (venueCount != events.size() || sessionCount != events.size()
+				|| tracking && (!trackedConsistent
+						|| venueCount != venueIndexCount
+						|| sessionCount != sessionIndexCount)) {
+			return false;
+		}
+		for (Event e : events) {
+			if (getEvent(e.getVenue(), e.getSession()) != e || sessionIndex
+					.get(e.getSession()).get(e.getVenue()) != e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the line-up contains null, or there are two or more
+	 * events scheduled for both the same venue and session time. The events
+	 * are checked in a single pass, remembering the venue and session of each
+	 * event in a hash set.
+	 * 
+	 * @return true if the line-up contains null, or two or more events
+	 *         occurring at the same venue at the same time
 	 */
 	private boolean eventsClash() {
-		for (Event a : events) {
-			for (Event b : events) {
-				if (!a.equals(b) && a.getVenue().equals(b.getVenue())
-						&& a.getSession() == b.getSession()) {
-					return true;
-				}
+		// the venues of the events, numbered for their slot keys
+		VenueRegistry venues = new VenueRegistry();
+		// the venue ids and sessions of the events checked so far
+		Set<Long> slots = new HashSet<>();
+		for (Event e : events) {
+			if (e == null || !slots.add(((long) venues.register(e
+					.getVenue()) << 32) | e.getSession())) {
+				return true;
 			}
 		}
 		return false;
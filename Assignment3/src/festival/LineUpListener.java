@@ -0,0 +1,38 @@
+package festival;
+
+import java.util.EventListener;
+
+/**
+ * A listener for the events of a LineUp, so that a view of the line-up (such
+ * as the list of events or sessions shown by the planner) can add or drop
+ * the one event that changed instead of copying the whole line-up again.
+ * 
+ * Each method is called once per event, after the line-up holds its new
+ * state, on the thread that changed the line-up. An event that clashes with
+ * the line-up is never added, so it is never reported. addAll reports each
+ * of its events in turn once all of them are in the line-up, so a listener
+ * that looks at the line-up sees the whole batch from the first call.
+ */
+public interface LineUpListener extends EventListener {
+
+	/**
+	 * Called after an event has been added to the line-up.
+	 * 
+	 * @param lineUp
+	 *            the line-up that was changed
+	 * @param event
+	 *            the event that was added
+	 */
+	void eventAdded(LineUp lineUp, Event event);
+
+	/**
+	 * Called after an event has been removed from the line-up.
+	 * 
+	 * @param lineUp
+	 *            the line-up that was changed
+	 * @param event
+	 *            the event that was removed
+	 */
+	void eventRemoved(LineUp lineUp, Event event);
+
+}
@@ -2,14 +2,33 @@ package festival;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides a method to read a festival line-up from a file.
  */
 public class LineUpReader {
 
+	// the pattern that the string representation of an event should conform to
+	private static final Pattern EVENT_PATTERN =
+			Pattern.compile("([\\w ]+): session \\+?(\\d+) at (\\S+)");
+
+	// the text between the act and the session, and the session and the venue
+	private static final char[] SESSION_TEXT = ": session ".toCharArray();
+	private static final char[] VENUE_TEXT = " at ".toCharArray();
+
+	// the smallest number of characters in a chunk read in parallel
+	private static final int MINIMUM_CHUNK = 1 << 16;
+	// the number of chunks for each thread of the common fork/join pool
+	private static final int CHUNKS_PER_THREAD = 4;
+
 	/**
 	 * <p>
 	 * Reads a text file called fileName that describes the events in the
@@ -48,12 +67,15 @@ public class LineUpReader {
 		Scanner in = new Scanner(new FileReader(fileName));
 		LineUp lineUp = new LineUp();// the line-up to be returned
 		int lineNumber = 0;// the number of the line being read
+		// the venues read so far, so that each name is one venue
+		VenueRegistry venues = new VenueRegistry();
 
 		try {
 			// read in the events from the line-up, one per line
 			while (in.hasNextLine()) {
 				try {
-					Event event = readEventString(++lineNumber, in.nextLine());
+					Event event = readEventString(++lineNumber, in.nextLine(),
+							venues);
 					lineUp.addEvent(event);
 				} catch (InvalidLineUpException e) {
 					throw new FormatException("Line " + lineNumber
@@ -68,6 +90,287 @@ public class LineUpReader {
 		return lineUp;
 	}
 
+	/**
+	 * <p>
+	 * Reads a line-up from the text file called fileName, exactly as read
+	 * does, but faster.
+	 * </p>
+	 * 
+	 * <p>
+	 * The same files are accepted and the same line-up is returned, and a
+	 * file that read rejects is rejected with the same FormatException
+	 * message. Instead of a Scanner and a regular expression, each line is
+	 * scanned by hand from a reusable character buffer and the session number
+	 * is parsed from its digits directly, so the only objects created for a
+	 * line are its act, venue name and event.
+	 * </p>
+	 * 
+	 * @param fileName
+	 *            the file to read from.
+	 * @return the line-up that was read from the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format.
+	 */
+	public static LineUp readFast(String fileName) throws IOException,
+			FormatException {
+		LineUp lineUp = new LineUp();// the line-up to be returned
+		int lineNumber = 0;// the number of the line being read
+		// the venues read so far, so that each name is one venue
+		VenueRegistry venues = new VenueRegistry();
+
+		try (LineSplitter in = new LineSplitter(new FileReader(fileName))) {
+			// read in the events from the line-up, one per line
+			while (in.nextLine()) {
+				try {
+					Event event = readEventChars(++lineNumber, in.getLine(),
+							in.getLength(), venues);
+					lineUp.addEvent(event);
+				} catch (InvalidLineUpException e) {
+					throw new FormatException("Line " + lineNumber
+							+ ": more than one event scheduled for"
+							+ " the same time and session");
+				}
+			}
+		}
+		return lineUp;
+	}
+
+	/**
+	 * <p>
+	 * Reads a line-up from the text file called fileName, exactly as read
+	 * does, but parsing the file in parallel.
+	 * </p>
+	 * 
+	 * <p>
+	 * The file is split at line boundaries into chunks, which are parsed (as
+	 * by readFast) on the common fork/join pool. The events of the chunks are
+	 * then added to the line-up in file order, so the line-up is the same as
+	 * that returned by read, and if the file is invalid then the
+	 * FormatException is the one that read would throw: that of the first
+	 * line that is incorrectly formatted or clashes with an earlier line, in
+	 * any chunk.
+	 * </p>
+	 * 
+	 * <p>
+	 * The whole file is held in memory while it is parsed.
+	 * </p>
+	 * 
+	 * @param fileName
+	 *            the file to read from.
+	 * @return the line-up that was read from the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format.
+	 */
+	public static LineUp readParallel(String fileName) throws IOException,
+			FormatException {
+		// the characters of the file
+		char[] text = readFully(fileName);
+		// the start of each chunk of the file, followed by the end of the file
+		List<Integer> bounds = new ArrayList<>();
+		// the target number of characters in a chunk
+		int chunkSize = Math.max(MINIMUM_CHUNK, text.length / CHUNKS_PER_THREAD
+				/ ForkJoinPool.getCommonPoolParallelism());
+		for (int start = 0; start < text.length; start =
+				nextLineStart(text, start + chunkSize)) {
+			bounds.add(start);
+		}
+		bounds.add(text.length);
+
+		// the chunks of the file, parsed in parallel
+		List<Chunk> chunks = IntStream.range(0, bounds.size() - 1).parallel()
+				.mapToObj(i -> new Chunk(text, bounds.get(i),
+						bounds.get(i + 1)))
+				.collect(Collectors.toList());
+
+		LineUp lineUp = new LineUp();// the line-up to be returned
+		int lineNumber = 0;// the number of the last line of the last chunk
+		for (Chunk chunk : chunks) {
+			for (Event event : chunk.events) {
+				try {
+					lineUp.addEvent(event);
+					++lineNumber;
+				} catch (InvalidLineUpException e) {
+					throw new FormatException("Line " + (lineNumber + 1)
+							+ ": more than one event scheduled for"
+							+ " the same time and session");
+				}
+			}
+			if (chunk.badLine != null) {
+				// parse the bad line again, to report its global line number
+				readEventChars(lineNumber + 1, chunk.badLine,
+						chunk.badLine.length, new VenueRegistry());
+			}
+		}
+		return lineUp;
+	}
+
+	/**
+	 * <p>
+	 * Returns a lazily populated stream of the events described by the text
+	 * file called fileName, in file order, without building a line-up.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each line is read and parsed (as by readFast) only when the stream needs
+	 * its event, so only one line is held in memory at a time. The file is
+	 * closed when the stream is closed, so the stream should be used in a
+	 * try-with-resources statement.
+	 * </p>
+	 * 
+	 * <p>
+	 * An incorrectly formatted line is reported, when it is reached, by an
+	 * UncheckedFormatException whose cause is the FormatException (with the
+	 * same line-numbered message) that read would throw for it. An error
+	 * reading the file is reported by an UncheckedIOException. Since no
+	 * line-up is built, events that clash (are scheduled for the same venue
+	 * and session) are not detected.
+	 * </p>
+	 * 
+	 * @param fileName
+	 *            the file to read from.
+	 * @return a stream of the events read from the file.
+	 * @throws IOException
+	 *             if the file cannot be opened for reading.
+	 */
+	public static Stream<Event> stream(String fileName) throws IOException {
+		// the lines of the file
+		LineSplitter in = new LineSplitter(new FileReader(fileName));
+		// the events of the lines of the file, parsed as they are needed
+		Spliterator<Event> events = new Spliterators.AbstractSpliterator<Event>(
+				Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+			// the number of the line being read
+			private int lineNumber = 0;
+			// the venues read so far, so that each name is one venue
+			private final VenueRegistry venues = new VenueRegistry();
+
+			@Override
+			public boolean tryAdvance(Consumer<? super Event> action) {
+				try {
+					if (!in.nextLine()) {
+						return false;
+					}
+					action.accept(readEventChars(++lineNumber, in.getLine(),
+							in.getLength(), venues));
+					return true;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				} catch (FormatException e) {
+					throw new UncheckedFormatException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(events, false).onClose(() -> {
+			try {
+				in.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * The events parsed from a chunk of a line-up file: one for each line of
+	 * the chunk up to, but not including, the first incorrectly formatted
+	 * line (if any).
+	 */
+	private static final class Chunk {
+
+		// the events of the lines of the chunk, in order
+		private final List<Event> events;
+		// the first incorrectly formatted line of the chunk, or null if none
+		private char[] badLine;
+
+		/**
+		 * @require text != null && 0 <= start <= end <= text.length && start
+		 *          and end are at line boundaries
+		 * @ensure Parses the lines of text[start..end).
+		 */
+		private Chunk(char[] text, int start, int end) {
+			events = new ArrayList<>();
+			// the number of the line being read, within the chunk
+			int lineNumber = 0;
+			// the venues of the chunk, so that each name is one venue
+			VenueRegistry venues = new VenueRegistry();
+			try (LineSplitter in = new LineSplitter(new CharArrayReader(text,
+					start, end - start))) {
+				while (in.nextLine()) {
+					try {
+						events.add(readEventChars(++lineNumber, in.getLine(),
+								in.getLength(), venues));
+					} catch (FormatException e) {
+						badLine = Arrays.copyOf(in.getLine(), in.getLength());
+						break;
+					}
+				}
+			} catch (IOException e) {
+				// a CharArrayReader does not throw IOExceptions while open
+				throw new UncheckedIOException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Returns all of the characters of the file called fileName, decoded as
+	 * by a FileReader.
+	 * 
+	 * @throws IOException
+	 *             if there is an error reading from the file.
+	 */
+	private static char[] readFully(String fileName) throws IOException {
+		try (Reader in = new FileReader(fileName)) {
+			// the characters read so far, and their number
+			char[] text = new char[(int) Math.min(Integer.MAX_VALUE - 8,
+					Math.max(16, new File(fileName).length()))];
+			int length = 0;
+			// the number of characters read by the last read
+			int read;
+			while ((read = in.read(text, length, text.length - length)) >= 0) {
+				length += read;
+				if (length == text.length) {
+					text = Arrays.copyOf(text, text.length * 2);
+				}
+			}
+			return length == text.length ? text : Arrays.copyOf(text, length);
+		}
+	}
+
+	/**
+	 * Returns the start of the first line of text that starts at or after
+	 * position (or text.length if there is none), where lines are split as by
+	 * LineSplitter.
+	 * 
+	 * @require text != null && position > 0
+	 */
+	private static int nextLineStart(char[] text, int position) {
+		// the position of the character to check
+		int i = position - 1;
+		if (i < text.length && text[i] == '\r' && i + 1 < text.length
+				&& text[i + 1] == '\n') {
+			// position is between the two characters of a "\r\n"
+			i++;
+		}
+		for (; i < text.length; i++) {
+			switch (text[i]) {
+			case '\r':
+				return i + 1 < text.length && text[i + 1] == '\n' ? i + 2
+						: i + 1;
+			case '\n':
+			case '\u2028':
+			case '\u2029':
+			case '\u0085':
+				return i + 1;
+			default:
+			}
+		}
+		return text.length;
+	}
+
 	/**
 	 * <p>
 	 * Reads and returns the event from the given line of the file.
@@ -90,22 +393,21 @@ public class LineUpReader {
 	 * @param lineNumber
 	 *            the line number that the line occurred on in the file (to be
 	 *            used for error messages format exceptions).
+	 * @param venues
+	 *            the registry to intern the venue of the event with
 	 * @return the event read from the line
 	 * @throws FormatException
 	 *             if the format of the event on the line is not valid (as
 	 *             described above).
 	 */
-	private static Event readEventString(int lineNumber, String line)
-			throws FormatException {
+	private static Event readEventString(int lineNumber, String line,
+			VenueRegistry venues) throws FormatException {
 		Venue venue; // venue of the event on line
 		int session; // session of the event on line
 		String act; // act of the event on line
 
-		// the pattern that the string representation of the event should
-		// conform to, and the matcher for matching the string to the pattern
-		Pattern pattern =
-				Pattern.compile("([\\w ]+): session \\+?(\\d+) at (\\S+)");
-		Matcher matcher = pattern.matcher(line);
+		// the matcher for matching the string to the event pattern
+		Matcher matcher = EVENT_PATTERN.matcher(line);
 
 		// retrieve venue, session and act if pattern matches the line
 		if (matcher.matches()) {
@@ -122,7 +424,7 @@ public class LineUpReader {
 						+ ": event incorrectly formatted. " + matcher.group(2)
 						+ " is not a positive integer");
 			}
-			venue = new Venue(matcher.group(3));
+			venue = venues.intern(matcher.group(3));
 		} else {
 			throw new FormatException("Line " + lineNumber
 					+ ": event incorrectly formatted");
@@ -132,4 +434,120 @@ public class LineUpReader {
 		return new Event(venue, session, act);
 	}
 
+	/**
+	 * Reads and returns the event from the first length characters of line,
+	 * exactly as readEventString does for the same characters, but without a
+	 * regular expression.
+	 * 
+	 * @param lineNumber
+	 *            the line number that the line occurred on in the file (to be
+	 *            used for error messages format exceptions).
+	 * @param line
+	 *            the characters of the line (from position 0)
+	 * @param length
+	 *            the number of characters in the line
+	 * @param venues
+	 *            the registry to intern the venue of the event with
+	 * @return the event read from the line
+	 * @throws FormatException
+	 *             if the format of the event on the line is not valid.
+	 */
+	private static Event readEventChars(int lineNumber, char[] line,
+			int length, VenueRegistry venues) throws FormatException {
+		// the position of the next character to scan
+		int i = 0;
+		while (i < length && isActChar(line[i])) {
+			i++;
+		}
+		// the end of the act
+		int actEnd = i;
+		if (actEnd == 0 || !matchesAt(line, length, i, SESSION_TEXT)) {
+			throw new FormatException("Line " + lineNumber
+					+ ": event incorrectly formatted");
+		}
+		i += SESSION_TEXT.length;
+		if (i < length && line[i] == '+') {
+			i++;
+		}
+		// the start of the digits of the session
+		int digitsStart = i;
+		// the session number, or -1 if it is too large to be an int
+		int session = 0;
+		while (i < length && line[i] >= '0' && line[i] <= '9') {
+			// the value of the digit
+			int digit = line[i] - '0';
+			if (session >= 0) {
+				session = session > (Integer.MAX_VALUE - digit) / 10 ? -1
+						: session * 10 + digit;
+			}
+			i++;
+		}
+		// the end of the digits of the session
+		int digitsEnd = i;
+		if (digitsEnd == digitsStart
+				|| !matchesAt(line, length, i, VENUE_TEXT)) {
+			throw new FormatException("Line " + lineNumber
+					+ ": event incorrectly formatted");
+		}
+		i += VENUE_TEXT.length;
+		// the start of the venue name
+		int venueStart = i;
+		while (i < length && !isWhitespace(line[i])) {
+			i++;
+		}
+		if (i == venueStart || i != length) {
+			throw new FormatException("Line " + lineNumber
+					+ ": event incorrectly formatted");
+		}
+		if (session < 0) {
+			throw new FormatException("Line " + lineNumber
+					+ ": event incorrectly formatted. "
+					+ new String(line, digitsStart, digitsEnd - digitsStart)
+					+ " is not an integer");
+		}
+		if (session == 0) {
+			throw new FormatException("Line " + lineNumber
+					+ ": event incorrectly formatted. "
+					+ new String(line, digitsStart, digitsEnd - digitsStart)
+					+ " is not a positive integer");
+		}
+		return new Event(venues.intern(new String(line, venueStart, length
+				- venueStart)), session, new String(line, 0, actEnd));
+	}
+
+	/**
+	 * Returns true if c is matched by the regular expression [\w ], i.e. it
+	 * is an ASCII letter or digit, an underscore or a space.
+	 */
+	private static boolean isActChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || c == '_' || c == ' ';
+	}
+
+	/**
+	 * Returns true if c is matched by the regular expression \s, i.e. it is
+	 * one of ' ', '\t', '\n', U+000B, '\f' and '\r'.
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f'
+				|| c == '\r';
+	}
+
+	/**
+	 * Returns true if the first length characters of line contain the given
+	 * text starting at position start.
+	 */
+	private static boolean matchesAt(char[] line, int length, int start,
+			char[] text) {
+		if (length - start < text.length) {
+			return false;
+		}
+		for (int i = 0; i < text.length; i++) {
+			if (line[start + i] != text[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
@@ -0,0 +1,458 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable snapshot of the line-up of a festival.
+ * </p>
+ * 
+ * <p>
+ * A snapshot can be read by any number of threads at once without locking.
+ * It keeps the events of each venue and of each session in sorted, read-only
+ * lists, so queries do not search or sort. Changes are made by creating a new
+ * snapshot that shares as much as possible with the old one (see
+ * ConcurrentLineUp).
+ * </p>
+ */
+public final class LineUpSnapshot implements Iterable<Event> {
+
+	// Correct line separator for executing machine (used in toString method)
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+	// the empty snapshot
+	static final LineUpSnapshot EMPTY = new LineUpSnapshot(
+			Collections.<Event> emptyList(),
+			Collections.<Venue, List<Event>> emptyMap(),
+			Collections.unmodifiableNavigableMap(
+					new TreeMap<Integer, List<Event>>()));
+
+	// the events in the line-up, in the order that they were added
+	private final List<Event> events;
+	// the events of each venue, in their natural ordering
+	private final Map<Venue, List<Event>> venueEvents;
+	// the events of each session, in their natural ordering
+	private final NavigableMap<Integer, List<Event>> sessionEvents;
+
+	/*
+	 * Invariant: events, venueEvents and sessionEvents are non-null and
+	 * read-only, and contain no empty lists && events contains no null and no
+	 * two events scheduled in the same venue for the same session &&
+	 * venueEvents.get(v) is the sorted list of the events in events at venue v
+	 * && sessionEvents.get(t) is the sorted list of the events in events in
+	 * session t
+	 */
+
+	/**
+	 * @require the parameters satisfy the class invariant
+	 * @ensure Creates a snapshot with the given events and indexes.
+	 */
+	private LineUpSnapshot(List<Event> events,
+			Map<Venue, List<Event>> venueEvents,
+			NavigableMap<Integer, List<Event>> sessionEvents) {
+		this.events = events;
+		this.venueEvents = venueEvents;
+		this.sessionEvents = sessionEvents;
+	}
+
+	/**
+	 * Returns a snapshot with the events of this one and the given event.
+	 * 
+	 * @require event != null
+	 * @throws InvalidLineUpException
+	 *             if there is already an event scheduled for the same venue and
+	 *             session as the given event
+	 */
+	LineUpSnapshot withEvent(Event event) {
+		if (getEvent(event.getVenue(), event.getSession()) != null) {
+			throw new InvalidLineUpException(
+					"Line up already includes an event at venue "
+							+ event.getVenue() + " at time "
+							+ event.getSession());
+		}
+		// the events of the new snapshot
+		List<Event> newEvents = new ArrayList<>(events.size() + 1);
+		newEvents.addAll(events);
+		newEvents.add(event);
+		// the venue index of the new snapshot
+		Map<Venue, List<Event>> newVenueEvents = new HashMap<>(venueEvents);
+		newVenueEvents.put(event.getVenue(), insert(venueEvents.get(event
+				.getVenue()), event));
+		// the session index of the new snapshot
+		NavigableMap<Integer, List<Event>> newSessionEvents =
+				new TreeMap<>(sessionEvents);
+		newSessionEvents.put(event.getSession(), insert(sessionEvents
+				.get(event.getSession()), event));
+		return new LineUpSnapshot(Collections.unmodifiableList(newEvents),
+				Collections.unmodifiableMap(newVenueEvents),
+				Collections.unmodifiableNavigableMap(newSessionEvents));
+	}
+
+	/**
+	 * Returns a snapshot with the events of this one and all of the given
+	 * events. The events are checked for clashes in a single hashed pass, and
+	 * the lists of each venue and session that they touch are rebuilt once,
+	 * so adding n events takes O(n log n) time rather than copying the
+	 * snapshot once per event.
+	 * 
+	 * @require events != null
+	 * @throws NullPointerException
+	 *             if events contains null
+	 * @throws InvalidLineUpException
+	 *             if two of the events, or one of the events and an event
+	 *             already in the snapshot, are scheduled for the same venue and
+	 *             session
+	 */
+	LineUpSnapshot withEvents(Collection<? extends Event> events) {
+		// the venues of the events, numbered for their slot keys
+		VenueRegistry venues = new VenueRegistry();
+		// the venue ids and sessions of the events checked so far
+		Set<Long> slots = new HashSet<>(events.size() * 4 / 3 + 1);
+		for (Event event : events) {
+			if (event == null) {
+				throw new NullPointerException(
+						"Cannot add a null event to a line-up.");
+			}
+			if (getEvent(event.getVenue(), event.getSession()) != null
+					|| !slots.add(((long) venues.register(event
+							.getVenue()) << 32) | event.getSession())) {
+				throw new InvalidLineUpException(
+						"Line up already includes an event at venue "
+								+ event.getVenue() + " at time "
+								+ event.getSession());
+			}
+		}
+		if (events.isEmpty()) {
+			return this;
+		}
+		// the events of the new snapshot
+		List<Event> newEvents = new ArrayList<>(this.events.size()
+				+ events.size());
+		newEvents.addAll(this.events);
+		newEvents.addAll(events);
+		// the venue and session indexes of the new snapshot
+		Map<Venue, List<Event>> newVenueEvents = new HashMap<>(venueEvents);
+		NavigableMap<Integer, List<Event>> newSessionEvents =
+				new TreeMap<>(sessionEvents);
+		// the lists of the venues and sessions touched, while they are built
+		Map<Venue, List<Event>> venueLists = new HashMap<>();
+		Map<Integer, List<Event>> sessionLists = new HashMap<>();
+		for (Event event : events) {
+			// the list of the event's venue
+			List<Event> atVenue = venueLists.get(event.getVenue());
+			if (atVenue == null) {
+				atVenue = copy(venueEvents.get(event.getVenue()));
+				venueLists.put(event.getVenue(), atVenue);
+			}
+			atVenue.add(event);
+			// the list of the event's session
+			List<Event> inSession = sessionLists.get(event.getSession());
+			if (inSession == null) {
+				inSession = copy(sessionEvents.get(event.getSession()));
+				sessionLists.put(event.getSession(), inSession);
+			}
+			inSession.add(event);
+		}
+		for (Map.Entry<Venue, List<Event>> entry : venueLists.entrySet()) {
+			Collections.sort(entry.getValue());
+			newVenueEvents.put(entry.getKey(), Collections
+					.unmodifiableList(entry.getValue()));
+		}
+		for (Map.Entry<Integer, List<Event>> entry : sessionLists.entrySet()) {
+			Collections.sort(entry.getValue());
+			newSessionEvents.put(entry.getKey(), Collections
+					.unmodifiableList(entry.getValue()));
+		}
+		return new LineUpSnapshot(Collections.unmodifiableList(newEvents),
+				Collections.unmodifiableMap(newVenueEvents),
+				Collections.unmodifiableNavigableMap(newSessionEvents));
+	}
+
+	/**
+	 * Returns a snapshot with the events of this one except the given event,
+	 * or this snapshot if it does not contain the event.
+	 * 
+	 * @require event != null
+	 */
+	LineUpSnapshot withoutEvent(Event event) {
+		if (!event.equals(getEvent(event.getVenue(), event.getSession()))) {
+			return this;
+		}
+		// the events of the new snapshot
+		List<Event> newEvents = new ArrayList<>(events);
+		newEvents.remove(event);
+		// the venue index of the new snapshot
+		Map<Venue, List<Event>> newVenueEvents = new HashMap<>(venueEvents);
+		// the remaining events at the venue of the event
+		List<Event> atVenue = remove(venueEvents.get(event.getVenue()), event);
+		if (atVenue.isEmpty()) {
+			newVenueEvents.remove(event.getVenue());
+		} else {
+			newVenueEvents.put(event.getVenue(), atVenue);
+		}
+		// the session index of the new snapshot
+		NavigableMap<Integer, List<Event>> newSessionEvents =
+				new TreeMap<>(sessionEvents);
+		// the remaining events in the session of the event
+		List<Event> inSession = remove(sessionEvents.get(event.getSession()),
+				event);
+		if (inSession.isEmpty()) {
+			newSessionEvents.remove(event.getSession());
+		} else {
+			newSessionEvents.put(event.getSession(), inSession);
+		}
+		return new LineUpSnapshot(Collections.unmodifiableList(newEvents),
+				Collections.unmodifiableMap(newVenueEvents),
+				Collections.unmodifiableNavigableMap(newSessionEvents));
+	}
+
+	/**
+	 * Returns the event scheduled for the given venue and session, or null if
+	 * there is none.
+	 * 
+	 * @param venue
+	 *            the venue of the event
+	 * @param session
+	 *            the session of the event
+	 * @return the event scheduled for the given venue and session, or null if
+	 *         there is no such event.
+	 */
+	public Event getEvent(Venue venue, int session) {
+		// the events at the venue, ordered by session
+		List<Event> atVenue = venueEvents.get(venue);
+		if (atVenue == null) {
+			return null;
+		}
+		// binary search for the session
+		int low = 0;
+		int high = atVenue.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			// the session of the middle event
+			int middleSession = atVenue.get(middle).getSession();
+			if (middleSession < session) {
+				low = middle + 1;
+			} else if (middleSession > session) {
+				high = middle - 1;
+			} else {
+				return atVenue.get(middle);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a read-only list of the events scheduled for the given venue,
+	 * ordered by session number (in ascending order).
+	 * 
+	 * @param venue
+	 *            the venue for which the events will be retrieved
+	 * @return a read-only list of the events scheduled for the given venue,
+	 *         ordered by session number
+	 * @throws NullPointerException
+	 *             if the given venue is null
+	 */
+	public List<Event> getEvents(Venue venue) {
+		if (venue == null) {
+			throw new NullPointerException(
+					"Cannot retrieve events for a null venue.");
+		}
+		// the events for the given venue
+		List<Event> result = venueEvents.get(venue);
+		return result == null ? Collections.<Event> emptyList() : result;
+	}
+
+	/**
+	 * Returns a read-only list of the events scheduled for the given session
+	 * time (across all venues), ordered by venue name (in ascending order).
+	 * 
+	 * @param session
+	 *            the session to retrieve the events for
+	 * @return A read-only list of the events scheduled for the given session
+	 *         time.
+	 * @throws InvalidSessionException
+	 *             if session <= 0
+	 */
+	public List<Event> getEvents(int session) {
+		if (session <= 0) {
+			throw new InvalidSessionException("Session number " + session
+					+ " must be positive");
+		}
+		// the events for the given session
+		List<Event> result = sessionEvents.get(session);
+		return result == null ? Collections.<Event> emptyList() : result;
+	}
+
+	/**
+	 * Returns a read-only set of all the venues where at least one event from
+	 * the line-up takes place.
+	 * 
+	 * @return The venues where events from the line-up will take place.
+	 */
+	public Set<Venue> getVenues() {
+		return venueEvents.keySet();
+	}
+
+	/**
+	 * If there is at least one event scheduled, then this method returns the
+	 * number of the first session where there is an event scheduled. Otherwise
+	 * it returns 0.
+	 * 
+	 * @return If there is at least one event scheduled, then the first session
+	 *         number that an event is scheduled for, and 0 otherwise.
+	 */
+	public int getFirstUsedSession() {
+		return sessionEvents.isEmpty() ? 0 : sessionEvents.firstKey();
+	}
+
+	/**
+	 * If there is at least one event scheduled, then this method returns the
+	 * number of the last session where there is an event scheduled. Otherwise
+	 * it returns 0.
+	 * 
+	 * @return If there is at least one event scheduled, then the last session
+	 *         number that an event is scheduled for, and 0 otherwise.
+	 */
+	public int getLastUsedSession() {
+		return sessionEvents.isEmpty() ? 0 : sessionEvents.lastKey();
+	}
+
+	/**
+	 * Returns the number of events in the snapshot.
+	 * 
+	 * @return the number of events in the snapshot
+	 */
+	public int size() {
+		return events.size();
+	}
+
+	/**
+	 * Returns a read-only iterator over the events in the snapshot, in the
+	 * order that they were added.
+	 */
+	@Override
+	public Iterator<Event> iterator() {
+		return events.iterator();
+	}
+
+	/**
+	 * The string representation of a snapshot is the same as that of a LineUp
+	 * with the same events: a line-separated concatenation of the string
+	 * representations of the events, in their natural ordering.
+	 */
+	@Override
+	public String toString() {
+		// the string representation under construction
+		StringBuilder result = new StringBuilder();
+		// the venues of the snapshot, ordered by name
+		List<Venue> venues = new ArrayList<>(venueEvents.keySet());
+		Collections.sort(venues, new Comparator<Venue>() {
+			@Override
+			public int compare(Venue a, Venue b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		for (Venue venue : venues) {
+			for (Event event : venueEvents.get(venue)) {
+				if (result.length() != 0) {
+					result.append(LINE_SEPARATOR);
+				}
+				result.append(event);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Determines whether this snapshot is internally consistent (i.e. it
+	 * satisfies its class invariant).
+	 * 
+	 * @return true if this snapshot is internally consistent, and false
+	 *         otherwise.
+	 */
+	public boolean checkInvariant() {
+		// the number of events found through the venue index
+		int venueCount = 0;
+		for (Map.Entry<Venue, List<Event>> entry : venueEvents.entrySet()) {
+			if (!isSortedAndMatches(entry.getValue(), entry.getKey(), 0)) {
+				return false;
+			}
+			venueCount += entry.getValue().size();
+		}
+		// the number of events found through the session index
+		int sessionCount = 0;
+		for (Map.Entry<Integer, List<Event>> entry : sessionEvents
+				.entrySet()) {
+			if (!isSortedAndMatches(entry.getValue(), null, entry.getKey())) {
+				return false;
+			}
+			sessionCount += entry.getValue().size();
+		}
+		if (venueCount != events.size() || sessionCount != events.size()) {
+			return false;
+		}
+		for (Event event : events) {
+			if (event == null || !event.equals(getEvent(event.getVenue(),
+					event.getSession()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the given list is non-empty, strictly increasing and its
+	 * events are all at the given venue (if it is not null) and in the given
+	 * session (if it is positive).
+	 */
+	private static boolean isSortedAndMatches(List<Event> list, Venue venue,
+			int session) {
+		if (list.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < list.size(); i++) {
+			// the event to check
+			Event event = list.get(i);
+			if ((venue != null && !venue.equals(event.getVenue()))
+					|| (session > 0 && session != event.getSession())
+					|| (i > 0 && list.get(i - 1).compareTo(event) >= 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a new, modifiable copy of the given list (or an empty list, if
+	 * it is null).
+	 */
+	private static List<Event> copy(List<Event> list) {
+		return list == null ? new ArrayList<Event>() : new ArrayList<>(list);
+	}
+
+	/**
+	 * Returns a read-only copy of the given sorted list (or an empty list, if
+	 * it is null) with the given event inserted in order.
+	 */
+	private static List<Event> insert(List<Event> sorted, Event event) {
+		// the new list of events
+		List<Event> result = sorted == null ? new ArrayList<Event>()
+				: new ArrayList<>(sorted);
+		// the position of the event in the list
+		int position = Collections.binarySearch(result, event);
+		result.add(-position - 1, event);
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns a read-only copy of the given sorted list, without the given
+	 * event.
+	 */
+	private static List<Event> remove(List<Event> sorted, Event event) {
+		// the new list of events
+		List<Event> result = new ArrayList<>(sorted);
+		result.remove(Collections.binarySearch(result, event));
+		return Collections.unmodifiableList(result);
+	}
+
+}
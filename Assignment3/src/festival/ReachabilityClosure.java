@@ -0,0 +1,109 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * An immutable, precomputed reachability closure of a shuttle timetable.
+ * </p>
+ * 
+ * <p>
+ * Only the sessions at the end of which services depart matter, so time is
+ * divided into layers: layer k (for k less than the number of such sessions)
+ * ends with the k-th of them, and the last layer follows the last of them.
+ * For each (venue, layer) state of the timetable, the closure records the
+ * set of (venue, layer) states that can be reached from it, as a bit set.
+ * Once built, each reachability query is a bit test after two binary
+ * searches. It takes space quadratic in the number of states (venues used by
+ * the timetable times the number of sessions that services depart in).
+ * </p>
+ */
+class ReachabilityClosure {
+
+	// the timetable that the closure is of
+	private final FrozenTimetable timetable;
+	// the number of layers
+	private final int layers;
+	// the states reachable from each state, indexed by state number
+	private final BitSet[] closure;
+
+	/*
+	 * Invariant: no field is null && layers == timetable.getSessionCount() +
+	 * 1 && closure.length == timetable.getVenueCount() * layers && the state
+	 * number of the venue with local index v in layer k is v * layers + k
+	 */
+
+	/**
+	 * @require timetable != null
+	 * @ensure Creates the reachability closure of the given timetable.
+	 */
+	ReachabilityClosure(FrozenTimetable timetable) {
+		this.timetable = timetable;
+		layers = timetable.getSessionCount() + 1;
+		closure = new BitSet[timetable.getVenueCount() * layers];
+		// fill in the closure backwards from the last layer
+		for (int k = layers - 1; k >= 0; k--) {
+			for (int i = 0; i < timetable.getVenueCount(); i++) {
+				// the state number of the venue in layer k
+				int state = getState(i, k);
+				// the states reachable from the venue in layer k
+				BitSet reachable = new BitSet(closure.length);
+				reachable.set(state);
+				if (k < layers - 1) {
+					// stay at the venue until the next layer
+					reachable.or(closure[state + 1]);
+					// the session that ends layer k
+					int session = timetable.getSession(k);
+					for (int j = timetable.getStart(i, session), end =
+							timetable.getEnd(i, session); j < end; j++) {
+						reachable.or(closure[getState(timetable
+								.getDestinationIndex(j), k + 1)]);
+					}
+				}
+				closure[state] = reachable;
+			}
+		}
+	}
+
+	/**
+	 * @require sourceVenue != null && destinationVenue != null &&
+	 *          sourceSession>0 && destinationSession >0
+	 * @ensure Returns true if it is possible to be at the source venue for the
+	 *         duration of the source session, and then, using the services of
+	 *         the timetable (if necessary) to get there, be at the
+	 *         destination venue in time for the given destination session.
+	 **/
+	boolean canReach(Venue sourceVenue, int sourceSession,
+			Venue destinationVenue, int destinationSession) {
+		if (destinationSession < sourceSession) {
+			return false;
+		}
+		// the local indices of the source and destination venues
+		int source = timetable.getVenueIndex(sourceVenue);
+		int destination = timetable.getVenueIndex(destinationVenue);
+		// the layer of the source session
+		int first = timetable.getSessionIndex(sourceSession);
+		if (source < 0 || destination < 0 || first == layers - 1) {
+			// no services can be caught from the source
+			return sourceVenue.equals(destinationVenue);
+		}
+		/*
+		 * the last layer that can be arrived in by the destination session:
+		 * a service departing at the end of the session ending layer k
+		 * arrives in layer k + 1 by the next session
+		 */
+		int last = Math.max(first, timetable
+				.getSessionIndex(destinationSession));
+		return closure[getState(source, first)].get(getState(destination,
+				last));
+	}
+
+	/**
+	 * Returns the state number of the venue with the given local index in the
+	 * given layer.
+	 */
+	private int getState(int venueIndex, int layer) {
+		return venueIndex * layers + layer;
+	}
+
+}
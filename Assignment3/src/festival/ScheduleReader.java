@@ -8,9 +8,6 @@ import java.util.*;
  */
 public class ScheduleReader {
 
-	// definition of an empty line
-	private final static String EMPTY_LINE = "";
-
 	/**
 	 * <p>
 	 * Reads a text file called fileName that describes the shuttle services
@@ -72,164 +69,163 @@ public class ScheduleReader {
 	 */
 	public static ShuttleTimetable read(String fileName) throws IOException,
 			FormatException {
-		// scanner for reading the file
-		Scanner in = new Scanner(new FileReader(fileName));
 		// the shuttle timetable to be returned
 		ShuttleTimetable timetable = new ShuttleTimetable();
 		Set<Venue> venues = new HashSet<>(); // source venues read so far
+		// every venue read so far, so that each name is one venue
+		VenueRegistry registry = new VenueRegistry();
 		int lineNumber = 0; // the number of the line being read
 
-		// read number of sessions in festival from first line of in
-		int numSessions = readNumberSessions(in, ++lineNumber);
-		try {
+		// the file is read in one buffered pass, a line and a token at a time
+		try (LineSplitter lines = new LineSplitter(new FileReader(fileName))) {
+			// tokenizer for reading the lines of the file
+			LineTokenizer in = new LineTokenizer(lines);
+			// read number of sessions in festival from first line of in
+			int numSessions = readNumberSessions(in, ++lineNumber);
 			// read in the services for each source venue
-			while (in.hasNextLine()) {
+			while (in.nextLine()) {
 				// read source venue from next line of in
-				Venue source =
-						readSourceVenue(in.nextLine(), ++lineNumber, venues);
+				Venue source = readSourceVenue(in, ++lineNumber, venues,
+						registry);
 				for (int session = 1; session <= numSessions; session++) {
 					// read services for source and session from next line of in
-					readServices(in, ++lineNumber, source, session, timetable);
+					readServices(in, ++lineNumber, source, session, timetable,
+							registry);
 				}
-				checkLineIsEmpty(in.hasNextLine() ? in.nextLine() : null,
-						++lineNumber);
+				checkLineIsEmpty(in, ++lineNumber);
 			}
-		} finally {
-			in.close();
 		}
 		return timetable;
 	}
 
+	/**
+	 * Reads a text file called fileName that describes the shuttle services
+	 * available for a festival, in the format described for read(String), and
+	 * returns a frozen timetable containing each of the services in the file.
+	 * 
+	 * @param fileName
+	 *            the file to read from.
+	 * @return the frozen shuttle timetable that was read from the file.
+	 * @throws IOException
+	 *             if there is an error reading from the input file.
+	 * @throws FormatException
+	 *             if there is an error with the input format, as for
+	 *             read(String).
+	 */
+	public static FrozenTimetable readFrozen(String fileName)
+			throws IOException, FormatException {
+		return read(fileName).freeze();
+	}
+
 	/**
 	 * @require in!=null && in is open for reading
-	 * @ensure reads next line from scanner, and returns session number from
-	 *         that line
+	 * @ensure reads next line from in, and returns session number from that
+	 *         line
 	 * @throws FormatException
-	 *             if there is no next line in the scanner, or the line does not
+	 *             if there is no next line in the input, or the line does not
 	 *             contain one positive integer denoting the session number.
 	 */
-	private static int readNumberSessions(Scanner in, int lineNumber)
-			throws FormatException {
+	private static int readNumberSessions(LineTokenizer in, int lineNumber)
+			throws IOException, FormatException {
 		// number of sessions to be read
 		int numberOfSessions = 0;
-		// scanner for parsing the line containing the number of sessions
-		Scanner lineScanner = null;
-		try {
-			if (in.hasNextLine()) {
-				lineScanner = new Scanner(in.nextLine());
-				if (lineScanner.hasNextInt()) {
-					numberOfSessions = lineScanner.nextInt();
-				}
-				if (numberOfSessions <= 0) {
-					throw new FormatException("Line " + lineNumber
-							+ ": invalid number of sessions");
-				}
-				if (lineScanner.hasNext()) {
-					throw new FormatException("Line " + lineNumber
-							+ ": extra information on line");
-				}
-			} else {
+		if (in.nextLine()) {
+			if (in.hasNextInt()) {
+				numberOfSessions = in.nextInt();
+			}
+			if (numberOfSessions <= 0) {
 				throw new FormatException("Line " + lineNumber
-						+ ": number of sessions not specified");
+						+ ": invalid number of sessions");
 			}
-		} finally {
-			if (lineScanner != null) {
-				lineScanner.close();
+			if (in.hasNext()) {
+				throw new FormatException("Line " + lineNumber
+						+ ": extra information on line");
 			}
+		} else {
+			throw new FormatException("Line " + lineNumber
+					+ ": number of sessions not specified");
 		}
 		return numberOfSessions;
 	}
 
 	/**
-	 * @require venues != null && line != null
-	 * @ensure creates a new venue with it's name specified on the input line,
-	 *         and adds it to the set of venues, and returns it
+	 * @require in != null && venues != null && registry != null && in is
+	 *          positioned at the start of the line containing the source
+	 *          venue
+	 * @ensure interns the venue with its name specified on the current line
+	 *         in registry, and adds it to the set of venues, and returns it
 	 * @throws FormatException
 	 *             if there is no venue name on the line, or the venue read is
 	 *             already in venues, or there is additional information on the
 	 *             venue line.
 	 */
-	private static Venue readSourceVenue(String line, int lineNumber,
-			Set<Venue> venues) throws FormatException {
-		// scanner for parsing the line containing the source venue
-		Scanner lineScanner = null;
-		try {
-			lineScanner = new Scanner(line);
-			if (lineScanner.hasNext()) {
-				Venue source = new Venue(lineScanner.next()); // source venue
-				if (venues.contains(source)) {
-					throw new FormatException("Line " + lineNumber
-							+ ": duplicate source venue");
-				}
-				if (lineScanner.hasNext()) {
-					throw new FormatException("Line " + lineNumber
-							+ ": extra information on line");
-				}
-				venues.add(source);
-				return source;
-			} else {
+	private static Venue readSourceVenue(LineTokenizer in, int lineNumber,
+			Set<Venue> venues, VenueRegistry registry)
+			throws FormatException {
+		if (in.hasNext()) {
+			// the source venue
+			Venue source = registry.intern(in.next());
+			if (venues.contains(source)) {
 				throw new FormatException("Line " + lineNumber
-						+ ": no venue name given");
+						+ ": duplicate source venue");
 			}
-		} finally {
-			if (lineScanner != null) {
-				lineScanner.close();
+			if (in.hasNext()) {
+				throw new FormatException("Line " + lineNumber
+						+ ": extra information on line");
 			}
+			venues.add(source);
+			return source;
+		} else {
+			throw new FormatException("Line " + lineNumber
+					+ ": no venue name given");
 		}
 	}
 
 	/**
-	 * @require in != null && in is not closed && source != null && session > 0
-	 *          && timetable != null
-	 * @ensure reads services for source at session from the next line in the
-	 *         scanner and adds them to the timetable
+	 * @require in != null && in is open for reading && source != null &&
+	 *          session > 0 && timetable != null && registry != null
+	 * @ensure reads services for source at session from the next line of in
+	 *         and adds them to the timetable, interning their destinations
+	 *         in registry
 	 * @throws FormatException
-	 *             if there is no next line on the scanner, or if the line is
-	 *             not correctly formatted (i.e. it does not start with the
-	 *             given session, or the services are not valid or contain
+	 *             if there is no next line in the input, or if the line is not
+	 *             correctly formatted (i.e. it does not start with the given
+	 *             session, or the services are not valid or contain
 	 *             duplicates.)
 	 */
-	private static void readServices(Scanner in, int lineNumber, Venue source,
-			int session, ShuttleTimetable timetable) throws FormatException {
-		Scanner lineScanner = null; // scanner for the line
-
+	private static void readServices(LineTokenizer in, int lineNumber,
+			Venue source, int session, ShuttleTimetable timetable,
+			VenueRegistry registry) throws IOException, FormatException {
 		// check that there is a line for session
-		if (!in.hasNextLine()) {
+		if (!in.nextLine()) {
 			throw new FormatException("Line " + lineNumber + ": "
 					+ "not enough sessions for" + source);
 		}
 
-		try {
-			lineScanner = new Scanner(in.nextLine());
-			// read session number and check that it equals the given session
-			readSessionNumber(lineScanner, lineNumber, session);
-			// create and add a service for each destination venue
-			while (lineScanner.hasNext()) {
-				Venue destination = new Venue(lineScanner.next());
-				addService(lineNumber, timetable, source, destination, session);
-			}
-		} finally {
-			if (lineScanner != null) {
-				lineScanner.close();
-			}
+		// read session number and check that it equals the given session
+		readSessionNumber(in, lineNumber, session);
+		// create and add a service for each destination venue
+		while (in.hasNext()) {
+			Venue destination = registry.intern(in.next());
+			addService(lineNumber, timetable, source, destination, session);
 		}
 	}
 
 	/**
-	 * Reads the session number as the first token from the line scanner and
+	 * Reads the session number as the first token from the current line and
 	 * checks that it is the expected session number.
 	 * 
-	 * @require lineScanner!=null && lineScanner is open for reading
-	 * @ensure reads the next integer token from the scanner lineScanner
+	 * @require in!=null && in is positioned at the start of a line
+	 * @ensure reads the next integer token from the current line of in
 	 * @throws FormatException
-	 *             if lineScanner.hasNextInt() is false or the integer is not
-	 *             equal to expectedSessionNumber
+	 *             if in.hasNextInt() is false or the integer is not equal to
+	 *             expectedSessionNumber
 	 */
-	private static void readSessionNumber(Scanner lineScanner, int lineNumber,
+	private static void readSessionNumber(LineTokenizer in, int lineNumber,
 			int expectedSessionNumber) throws FormatException {
 		int session = 0;
-		if (lineScanner.hasNextInt()) {
-			session = lineScanner.nextInt();
+		if (in.hasNextInt()) {
+			session = in.nextInt();
 		} else {
 			throw new FormatException("Line " + lineNumber
 					+ ": missing session number " + expectedSessionNumber);
@@ -266,14 +262,15 @@ public class ScheduleReader {
 	}
 
 	/**
-	 * Checks that the given line is empty.
+	 * Reads the next line of in, and checks that it is empty.
 	 * 
 	 * @throws FormatException
-	 *             if line is not equal to the empty string.
+	 *             if there is no next line, or it is not equal to the empty
+	 *             string.
 	 */
-	private static void checkLineIsEmpty(String line, int lineNumber)
-			throws FormatException {
-		if (!EMPTY_LINE.equals(line)) {
+	private static void checkLineIsEmpty(LineTokenizer in, int lineNumber)
+			throws IOException, FormatException {
+		if (!in.nextLine() || !in.isLineEmpty()) {
 			throw new FormatException("Empty line expected on line "
 					+ lineNumber);
 		}
@@ -1,6 +1,7 @@
 package festival;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <p>
@@ -17,9 +18,22 @@ public class ShuttleTimetable implements Iterable<Service> {
 
 	// the services in the shuttle timetable
 	private Set<Service> services;
+	/*
+	 * the destinations of the services, by source venue and session, as
+	 * read-only sets that are replaced (never changed) when a service is added
+	 * or removed
+	 */
+	private Map<Venue, Map<Integer, Set<Venue>>> destinations;
+	// the listeners told about changes to the services of the timetable
+	private List<TimetableListener> listeners;
 
 	/*
-	 * Invariant: services != null
+	 * Invariant: services != null && destinations != null && for every source
+	 * venue v and session t, destinations.get(v).get(t) (where present)
+	 * is the non-empty, read-only set of destinations of the services in
+	 * services departing v at the end of t && destinations contains no empty
+	 * maps && listeners != null &&
+	 * !listeners.contains(null)
 	 */
 
 	/**
@@ -27,6 +41,8 @@ public class ShuttleTimetable implements Iterable<Service> {
 	 **/
 	public ShuttleTimetable() {
 		services = new HashSet<>();
+		destinations = new HashMap<>();
+		listeners = new CopyOnWriteArrayList<>();
 	}
 
 	/**
@@ -47,8 +63,97 @@ public class ShuttleTimetable implements Iterable<Service> {
 		if (service == null) {
 			throw new NullPointerException("Service cannot be null");
 		}
-		if (!services.contains(service)) {
-			services.add(service);
+		if (services.add(service)) {
+			// the destinations from the service's source, indexed by session
+			Map<Integer, Set<Venue>> sessions = destinations.get(service
+					.getSource());
+			if (sessions == null) {
+				sessions = new HashMap<>();
+				destinations.put(service.getSource(), sessions);
+			}
+			// the destinations from the source at the end of the session
+			Set<Venue> venues = sessions.get(service.getSession());
+			if (venues == null) {
+				sessions.put(service.getSession(), Collections
+						.singleton(service.getDestination()));
+			} else {
+				// the new set of destinations, replacing the old one
+				Set<Venue> replacement = new HashSet<>(venues);
+				replacement.add(service.getDestination());
+				sessions.put(service.getSession(), Collections
+						.unmodifiableSet(replacement));
+			}
+			for (TimetableListener listener : listeners) {
+				listener.serviceAdded(this, service);
+			}
+		}
+	}
+
+	/**
+	 * Adds each of the given services that is not already in the timetable,
+	 * as addService does for each of them in turn.
+	 *
+	 * The destinations of the new services are collected for each source
+	 * venue and session first, so each destination set is replaced once,
+	 * rather than copied again for every service added to it.
+	 *
+	 * @param services
+	 *            the services to be added to the shuttle timetable
+	 * @throws NullPointerException
+	 *             if services is null or contains null (in which case the
+	 *             timetable is unchanged)
+	 */
+	public void addAll(Collection<? extends Service> services) {
+		if (services == null || services.contains(null)) {
+			throw new NullPointerException("Services cannot be null");
+		}
+		// the services that are not already in the timetable, in order
+		List<Service> added = new ArrayList<>(services.size());
+		// the destinations of the added services, by source and session
+		Map<Venue, Map<Integer, Set<Venue>>> additions = new HashMap<>();
+		for (Service service : services) {
+			if (this.services.add(service)) {
+				added.add(service);
+				// the destinations added from the source, indexed by session
+				Map<Integer, Set<Venue>> sessions = additions.get(service
+						.getSource());
+				if (sessions == null) {
+					sessions = new HashMap<>();
+					additions.put(service.getSource(), sessions);
+				}
+				// the destinations added from the source in the session
+				Set<Venue> venues = sessions.get(service.getSession());
+				if (venues == null) {
+					venues = new HashSet<>();
+					sessions.put(service.getSession(), venues);
+				}
+				venues.add(service.getDestination());
+			}
+		}
+		for (Map.Entry<Venue, Map<Integer, Set<Venue>>> source : additions
+				.entrySet()) {
+			// the destinations from the source, indexed by session
+			Map<Integer, Set<Venue>> sessions = destinations.get(source
+					.getKey());
+			if (sessions == null) {
+				sessions = new HashMap<>();
+				destinations.put(source.getKey(), sessions);
+			}
+			for (Map.Entry<Integer, Set<Venue>> session : source.getValue()
+					.entrySet()) {
+				// the new set of destinations, replacing the old one (if any)
+				Set<Venue> replacement = session.getValue();
+				if (sessions.containsKey(session.getKey())) {
+					replacement.addAll(sessions.get(session.getKey()));
+				}
+				sessions.put(session.getKey(), Collections
+						.unmodifiableSet(replacement));
+			}
+		}
+		for (Service service : added) {
+			for (TimetableListener listener : listeners) {
+				listener.serviceAdded(this, service);
+			}
 		}
 	}
 
@@ -61,7 +166,54 @@ public class ShuttleTimetable implements Iterable<Service> {
 	 *            the service to be removed from the timetable.
 	 */
 	public void removeService(Service service) {
-		services.remove(service);
+		if (!services.remove(service)) {
+			return;
+		}
+		// the destinations from the service's source, indexed by session
+		Map<Integer, Set<Venue>> sessions =
+				destinations.get(service.getSource());
+		// the remaining destinations from the source at the end of the session
+		Set<Venue> venues = new HashSet<>(sessions.get(service.getSession()));
+		venues.remove(service.getDestination());
+		if (!venues.isEmpty()) {
+			sessions.put(service.getSession(), Collections
+					.unmodifiableSet(venues));
+		} else {
+			sessions.remove(service.getSession());
+			if (sessions.isEmpty()) {
+				destinations.remove(service.getSource());
+			}
+		}
+		for (TimetableListener listener : listeners) {
+			listener.serviceRemoved(this, service);
+		}
+	}
+
+	/**
+	 * Registers a listener to be told about each service that is added to or
+	 * removed from the timetable (see TimetableListener). The listener may add
+	 * or remove listeners while it is being notified.
+	 * 
+	 * @param listener
+	 *            the listener to register
+	 * @throws NullPointerException
+	 *             if listener is null
+	 */
+	public void addTimetableListener(TimetableListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("Listener cannot be null");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregisters the given listener, if it is registered with this timetable.
+	 * 
+	 * @param listener
+	 *            the listener to unregister
+	 */
+	public void removeTimetableListener(TimetableListener listener) {
+		listeners.remove(listener);
 	}
 
 	/**
@@ -94,6 +246,11 @@ public class ShuttleTimetable implements Iterable<Service> {
 	 *            the session number
 	 * @return A set of venues that can be reached by catching a single shuttle
 	 *         service from the source venue at the end of the given session.
+	 *         The set is read-only and is found without searching the other
+	 *         services or allocating. It never changes: adding or removing a
+	 *         service replaces the stored set rather than changing it, so the
+	 *         set can be kept, and iterated while the timetable is changed,
+	 *         but does not reflect later changes.
 	 * 
 	 * @throws NullPointerException
 	 *             if source is null
@@ -108,22 +265,32 @@ public class ShuttleTimetable implements Iterable<Service> {
 			throw new InvalidSessionException("Session number " + session
 					+ " must be positive");
 		}
-		// venues reachable from source at end of the session
-		Set<Venue> destinations = new HashSet<>();
-		for (Service s : services) {
-			if (s.getSource().equals(source) && s.getSession() == session) {
-				destinations.add(s.getDestination());
-			}
+		// the destinations from the source, indexed by session
+		Map<Integer, Set<Venue>> sessions = destinations.get(source);
+		if (sessions == null) {
+			return Collections.emptySet();
 		}
-		return destinations;
+		// venues reachable from source at end of the session
+		Set<Venue> venues = sessions.get(session);
+		return venues == null ? Collections.<Venue> emptySet() : venues;
 	}
 
 	/**
-	 * Returns an iterator over the services in the shuttle timetable.
+	 * Returns a frozen (immutable and compact) copy of this timetable, with
+	 * the same services.
+	 * 
+	 * @return a frozen copy of this timetable
+	 */
+	public FrozenTimetable freeze() {
+		return new FrozenTimetable(this);
+	}
+
+	/**
+	 * Returns a read-only iterator over the services in the shuttle timetable.
 	 */
 	@Override
 	public Iterator<Service> iterator() {
-		return services.iterator();
+		return Collections.unmodifiableSet(services).iterator();
 	}
 
 	/**
@@ -143,7 +310,33 @@ public class ShuttleTimetable implements Iterable<Service> {
 	 *         otherwise.
 	 */
 	public boolean checkInvariant() {
-		return services != null;
+		if (services == null || destinations == null || listeners == null
+				|| listeners.contains(null)) {
+			return false;
+		}
+		// the number of services recorded in the destination index
+		int indexed = 0;
+		for (Map<Integer, Set<Venue>> sessions : destinations.values()) {
+			if (sessions.isEmpty()) {
+				return false;
+			}
+			for (Set<Venue> venues : sessions.values()) {
+				if (venues.isEmpty()) {
+					return false;
+				}
+				indexed += venues.size();
+			}
+		}
+		if (indexed != services.size()) {
+			return false;
+		}
+		for (Service s : services) {
+			if (!getDestinations(s.getSource(), s.getSession()).contains(
+					s.getDestination())) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 }
@@ -0,0 +1,39 @@
+package festival;
+
+import java.util.EventListener;
+
+/**
+ * A listener for the services of a ShuttleTimetable. A FrozenTimetable (and
+ * so a DayPlanner) is a copy of the timetable at the time it was frozen, so
+ * a listener can be used to learn when that copy is out of date and freeze
+ * the timetable again only then, rather than before every query.
+ * 
+ * The timetable is a set of services, so adding a service that it already
+ * has, or removing one that it does not have, leaves it unchanged and is not
+ * reported. Each call is made on the thread that changed the timetable,
+ * after the destination sets returned by getDestinations for the source of
+ * the service have been replaced.
+ */
+public interface TimetableListener extends EventListener {
+
+	/**
+	 * Called after a service has been added to the timetable.
+	 * 
+	 * @param timetable
+	 *            the timetable that was changed
+	 * @param service
+	 *            the service that was added
+	 */
+	void serviceAdded(ShuttleTimetable timetable, Service service);
+
+	/**
+	 * Called after a service has been removed from the timetable.
+	 * 
+	 * @param timetable
+	 *            the timetable that was changed
+	 * @param service
+	 *            the service that was removed
+	 */
+	void serviceRemoved(ShuttleTimetable timetable, Service service);
+
+}
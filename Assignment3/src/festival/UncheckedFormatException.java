@@ -0,0 +1,29 @@
+package festival;
+
+/**
+ * An unchecked exception wrapping a FormatException, for reporting format
+ * errors where a checked exception cannot be thrown (such as from a stream).
+ */
+@SuppressWarnings("serial")
+public class UncheckedFormatException extends RuntimeException {
+
+	/**
+	 * Constructs a new exception wrapping the given FormatException, with its
+	 * detail message.
+	 * 
+	 * @throws NullPointerException
+	 *             if cause is null
+	 */
+	public UncheckedFormatException(FormatException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	/**
+	 * Returns the FormatException wrapped by this exception.
+	 */
+	@Override
+	public FormatException getCause() {
+		return (FormatException) super.getCause();
+	}
+
+}
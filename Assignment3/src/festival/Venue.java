@@ -1,6 +1,12 @@
 package festival;
 
-/** An immutable class representing a venue at a music festival. **/
+/**
+ * An immutable class representing a venue at a music festival.
+ * 
+ * Venues are compared by name. To share one instance per name, or to give
+ * venues dense integer ids for indexing arrays, register them with a
+ * VenueRegistry.
+ **/
 public class Venue {
 
 	// the name of the venue
@@ -34,9 +40,15 @@ public class Venue {
 
 	/**
 	 * Two venues are considered equal if their names are equivalent.
+	 * 
+	 * (Venues interned by the same VenueRegistry are the same instance, so
+	 * they are compared without comparing their names.)
 	 */
 	@Override
 	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
 		if (!(object instanceof Venue)) {
 			return false;
 		}
@@ -0,0 +1,150 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A registry of venues, local to whatever structure or reader owns it.
+ * </p>
+ * 
+ * <p>
+ * Each distinct venue registered with a registry is given a dense integer id
+ * local to that registry: the first venue is given id 0, the next id 1, and so
+ * on. Ids never change for the life of the registry, so they can be used to
+ * index arrays in place of hashed lookups on venues. The registry also
+ * interns venues, so that the venues it hands out share one canonical
+ * instance per name (which is cheap to compare, since Venue.equals checks for
+ * the same instance first).
+ * </p>
+ * 
+ * <p>
+ * A registry only holds the venues registered with it, and is discarded with
+ * its owner, so ids never grow with venues from other festivals. Ids from
+ * different registries are unrelated; venues themselves are always compared
+ * by name. A registry is not safe to use from multiple threads at once.
+ * </p>
+ */
+public final class VenueRegistry {
+
+	// the id of the registered venue with each name
+	private final Map<String, Integer> ids;
+	// the registered venues, indexed by id
+	private final List<Venue> venues;
+
+	/*
+	 * Invariant: ids.size() == venues.size() && ids.get(venues.get(i)
+	 * .getName()) == i for each id i
+	 */
+
+	/**
+	 * Creates a new registry with no venues registered.
+	 */
+	public VenueRegistry() {
+		ids = new HashMap<>();
+		venues = new ArrayList<>();
+	}
+
+	/**
+	 * Returns the registered venue with the given name, creating and
+	 * registering it if there is none.
+	 * 
+	 * @param name
+	 *            the name of the venue
+	 * @return the registered venue with the given name
+	 * @throws NullPointerException
+	 *             if the given name is null
+	 */
+	public Venue intern(String name) {
+		if (name == null) {
+			throw new NullPointerException("Venue names cannot be null");
+		}
+		// the id of the venue with the name, if it has been registered
+		Integer id = ids.get(name);
+		return id == null ? venues.get(register(new Venue(name))) : venues
+				.get(id);
+	}
+
+	/**
+	 * Returns the id of the given venue, registering it with the next free id
+	 * (and as the canonical venue for its name) if no venue with the same
+	 * name has been registered before.
+	 * 
+	 * @param venue
+	 *            the venue to register
+	 * @return the id of the venue in this registry
+	 * @throws NullPointerException
+	 *             if the given venue is null
+	 */
+	public int register(Venue venue) {
+		if (venue == null) {
+			throw new NullPointerException("Venues cannot be null");
+		}
+		// the id of the venue, if it has been registered
+		Integer id = ids.get(venue.getName());
+		if (id == null) {
+			id = venues.size();
+			venues.add(venue);
+			ids.put(venue.getName(), id);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of the given venue in this registry, or -1 if no venue
+	 * with the same name has been registered.
+	 * 
+	 * @param venue
+	 *            the venue to look up
+	 * @return the id of the venue, or -1 if it is not registered
+	 * @throws NullPointerException
+	 *             if the given venue is null
+	 */
+	public int getId(Venue venue) {
+		// the id of the venue, if it has been registered
+		Integer id = ids.get(venue.getName());
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the registered venue with the given id.
+	 * 
+	 * @param id
+	 *            the id of the venue
+	 * @return the registered venue with the given id
+	 * @throws IndexOutOfBoundsException
+	 *             if no venue has been registered with the given id
+	 */
+	public Venue get(int id) {
+		return venues.get(id);
+	}
+
+	/**
+	 * Returns the number of venues registered. Every registered venue has an
+	 * id less than this number.
+	 * 
+	 * @return the number of venues registered
+	 */
+	public int size() {
+		return venues.size();
+	}
+
+	/**
+	 * Determines whether this VenueRegistry is internally consistent (i.e. it
+	 * satisfies its class invariant).
+	 * 
+	 * @return true if this VenueRegistry is internally consistent, and false
+	 *         otherwise.
+	 */
+	public boolean checkInvariant() {
+		if (ids.size() != venues.size()) {
+			return false;
+		}
+		for (int i = 0; i < venues.size(); i++) {
+			if (!Integer.valueOf(i).equals(ids.get(venues.get(i).getName()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -135,10 +135,9 @@ public class PlannerController {
 		public void actionPerformed(ActionEvent event) {
 			// The selected event from the list.
 			Event selection = view.getSelectedLineUpEvent();
-			model.getIntermediatePlan().add(selection);
 			checkAddExceptions(selection);
 			// The size of the model is greater than 0.
-			if (model.getDayPlanModel().size() > 0) {
+			if (model.getDayPlanSize() > 0) {
 				view.getRemoveButton().setEnabled(true);
 				// If there are no events in the day plan, disable the remove
 				// button.
@@ -183,14 +182,12 @@ public class PlannerController {
 		if (model.containsEvent(selection)) {
 			view.errorBoxMessage("The day plan already contains '" + selection
 					+ "'", 0);
-			model.getIntermediatePlan().remove(selection);
 			// The day plan already contains an event with the same session as
 			// selection.
 		} else if (model.isNotUniqueSession(selection)) {
 			view.errorBoxMessage(
 					"The plan already includes an event in session "
 							+ selection.getSession(), 0);
-			model.getIntermediatePlan().remove(selection);
 			// The previous event in the day plan cannot reach selection.
 		} else if (!model.canReachPrevious(selection)) {
 			view.errorBoxMessage(selection
@@ -278,7 +275,7 @@ public class PlannerController {
 			setDayPlanList();
 		}
 		// If the day plan model is empty, the remove button is disabled.
-		if (model.getDayPlanModel().size() == 0) {
+		if (model.getDayPlanSize() == 0) {
 			view.getRemoveButton().setEnabled(false);
 		}
 	}
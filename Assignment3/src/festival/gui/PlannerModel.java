@@ -1,9 +1,9 @@
 package festival.gui;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -14,20 +14,33 @@ import festival.*;
  */
 public class PlannerModel {
 
+	// The entry of the session list that selects every session.
+	private static final String ALL_SESSIONS = "All sessions";
+	// The files that the festival is read from.
+	private static final String TIMETABLE_FILE = "timetable.txt";
+	private static final String LINE_UP_FILE = "lineUp.txt";
+	// The binary snapshot of both files, loaded instead while it is newer.
+	private static final String SNAPSHOT_FILE = "festival.snapshot";
+
+	// The snapshot that the festival was loaded from, or null if the text
+	// files were read.
+	private FestivalSnapshot snapshot;
+
 	// The shuttle timetable for the model.
 	private ShuttleTimetable timetable;
 	// The line up of events in the festival.
 	private LineUp lineUp;
 	// The line model for the line up.
 	private ArrayList<Event> lineUpModel;
-	// The users proposed day plan.
-	private ArrayList<Event> dayPlanModel;
-	// The dayplanner to check for day plan compatability.
+	// The users proposed day plan, indexed by session number.
+	private NavigableMap<Integer, Event> dayPlan;
+	// The dayplanner to check for day plan compatability (or null if the
+	// timetable has changed since it was created).
 	private DayPlanner dayPlanner;
 	// The list of all sessions in the festival.
 	private ArrayList<String> sessionList;
-	// An intermediate day plan used to check for validity when adding events.
-	private ArrayList<Event> intermediatePlan;
+	// The entry of the session list that lineUpModel is showing.
+	private String selectedSession = ALL_SESSIONS;
 
 	/**
 	 * Initialises the model for the Festival Planner.
@@ -38,7 +51,10 @@ public class PlannerModel {
 	/**
 	 * Reads the timetable, and initiates their respective list models.
 	 * 
-	 * @require intermediatePlan && dayPlanModel && dayPlanner are not null.
+	 * The timetable (and then the line up) are taken from the festival
+	 * snapshot instead, if it is newer than both text files.
+	 * 
+	 * @require dayPlan && dayPlanner are not null.
 	 * @ensure Timetable file will be either loaded, or an exception will be
 	 *         thrown.
 	 * @throws IOException
@@ -47,15 +63,59 @@ public class PlannerModel {
 	 *             - If there is an error in file format.
 	 */
 	public void initiateDayPlan() throws IOException, FormatException {
-		timetable = ScheduleReader.read("timetable.txt");
-		dayPlanner = new DayPlanner(timetable);
-		intermediatePlan = new ArrayList<Event>();
-		dayPlanModel = new ArrayList<Event>();
+		snapshot = loadSnapshot();
+		timetable = snapshot != null ? snapshot.getTimetable()
+				: ScheduleReader.read(TIMETABLE_FILE);
+		// The frozen copy used by the day planner is made again only once the
+		// timetable has changed, and then only when it is next needed.
+		timetable.addTimetableListener(new TimetableListener() {
+			@Override
+			public void serviceAdded(ShuttleTimetable timetable,
+					Service service) {
+				dayPlanner = null;
+			}
+
+			@Override
+			public void serviceRemoved(ShuttleTimetable timetable,
+					Service service) {
+				dayPlanner = null;
+			}
+		});
+		dayPlan = new TreeMap<Integer, Event>();
+	}
+
+	/**
+	 * Returns the shuttle timetable of the model. Changes made to it are
+	 * taken into account by the next reachability check.
+	 * 
+	 * @require initiateDayPlan has succeeded.
+	 * @ensure the timetable of the model is returned.
+	 * @return the shuttle timetable of the model.
+	 */
+	public ShuttleTimetable getTimetable() {
+		return timetable;
+	}
+
+	/**
+	 * Returns the day planner for the current timetable, freezing the
+	 * timetable again if it has changed since the day planner was created.
+	 * 
+	 * @require timetable is not null.
+	 * @ensure a day planner for the current timetable is returned.
+	 */
+	private DayPlanner getDayPlanner() {
+		if (dayPlanner == null) {
+			dayPlanner = new DayPlanner(timetable.freeze());
+		}
+		return dayPlanner;
 	}
 
 	/**
 	 * Reads the line up file, and intiates line up models.
 	 * 
+	 * If the line up was not taken from the festival snapshot, then a new
+	 * snapshot of it and the timetable is saved for the next start.
+	 * 
 	 * @require lineUp is not null.
 	 * @ensure lineUp file will be either loaded, or an exception will be
 	 *         thrown.
@@ -66,9 +126,93 @@ public class PlannerModel {
 	 */
 	public void initiateLineUp() throws IOException, FormatException {
 		// Load in the line up and populate both session and line up model.
-		lineUp = LineUpReader.read("lineUp.txt");
+		if (snapshot != null) {
+			lineUp = snapshot.getLineUp();
+		} else {
+			lineUp = LineUpReader.read(LINE_UP_FILE);
+			saveSnapshot();
+		}
 		createLineUpModel();
 		populateSessionList();
+		// Keep the line up and session models up to date one event at a time.
+		lineUp.addLineUpListener(new LineUpListener() {
+			@Override
+			public void eventAdded(LineUp lineUp, Event event) {
+				if (isSelected(event)) {
+					lineUpModel.add(event);
+				}
+				if (lineUp.getEventCount(event.getSession()) == 1) {
+					addSession(event.getSession());
+				}
+			}
+
+			@Override
+			public void eventRemoved(LineUp lineUp, Event event) {
+				if (isSelected(event)) {
+					lineUpModel.remove(event);
+				}
+				if (lineUp.getEventCount(event.getSession()) == 0) {
+					sessionList.remove("" + event.getSession());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the snapshot of the festival if it is newer than both text
+	 * files and can be loaded, and null otherwise (in which case the text
+	 * files should be read, and any error in them reported).
+	 * 
+	 * @ensure returns an up to date snapshot of the festival, or null.
+	 */
+	private FestivalSnapshot loadSnapshot() {
+		// The snapshot file.
+		File file = new File(SNAPSHOT_FILE);
+		if (!file.isFile()
+				|| file.lastModified() <= new File(TIMETABLE_FILE)
+						.lastModified()
+				|| file.lastModified() <= new File(LINE_UP_FILE)
+						.lastModified()) {
+			return null;
+		}
+		try {
+			return FestivalSnapshot.load(SNAPSHOT_FILE);
+		} catch (IOException | FormatException e) {
+			// An unreadable snapshot is replaced once the text files are read.
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the timetable and line up that were read from the
+	 * text files, so that the next start can load it instead. The snapshot
+	 * is only a cache, so it is deleted (and the files read again next time)
+	 * if it cannot be written.
+	 * 
+	 * @require timetable && lineUp were read from the text files.
+	 * @ensure the snapshot file holds them, or does not exist.
+	 */
+	private void saveSnapshot() {
+		if (timetable == null) {
+			return;
+		}
+		try {
+			new FestivalSnapshot(lineUp, timetable).write(SNAPSHOT_FILE);
+		} catch (IOException e) {
+			new File(SNAPSHOT_FILE).delete();
+		}
+	}
+
+	/**
+	 * Returns the line up of the model. Changes made to it are reflected in
+	 * the line up model and session list straight away.
+	 * 
+	 * @require initiateLineUp has succeeded.
+	 * @ensure the line up of the model is returned.
+	 * @return the line up of the model.
+	 */
+	public LineUp getLineUp() {
+		return lineUp;
 	}
 
 	/**
@@ -85,12 +229,24 @@ public class PlannerModel {
 	/**
 	 * Returns the users proposed day plan.
 	 * 
-	 * @require dayPlanModel is not null.
-	 * @ensure dayPlanModel will be returned.
+	 * @require dayPlan is not null.
+	 * @ensure A new list of the events in dayPlan, ordered by session number,
+	 *         will be returned.
 	 * @return The users proposed day plan.
 	 */
 	public ArrayList<Event> getDayPlanModel() {
-		return dayPlanModel;
+		return new ArrayList<Event>(dayPlan.values());
+	}
+
+	/**
+	 * Returns the number of events in the users proposed day plan.
+	 * 
+	 * @require dayPlan is not null.
+	 * @ensure The size of dayPlan will be returned.
+	 * @return The number of events in the users proposed day plan.
+	 */
+	public int getDayPlanSize() {
+		return dayPlan.size();
 	}
 
 	/**
@@ -104,17 +260,6 @@ public class PlannerModel {
 		return lineUpModel;
 	}
 
-	/**
-	 * Return the intermediate day plan.
-	 * 
-	 * @require intermediatePlan is not null.
-	 * @ensure intermediatePlan is returned.
-	 * @return the intermediate day plan.
-	 */
-	public ArrayList<Event> getIntermediatePlan() {
-		return intermediatePlan;
-	}
-
 	/**
 	 * Creates the line up model.
 	 * 
@@ -138,9 +283,10 @@ public class PlannerModel {
 	 *            - the session number that has been selected.
 	 */
 	public void createSessionModel(String session) {
+		selectedSession = session;
 		lineUpModel.clear();
 		// If the selection is "All sessions" add all events to line up model.
-		if (session == "All sessions") {
+		if (ALL_SESSIONS.equals(session)) {
 			for (Event event : lineUp) {
 				lineUpModel.add(event);
 			}
@@ -166,69 +312,86 @@ public class PlannerModel {
 	 *         in the line up, with no duplicates.
 	 */
 	private void populateSessionList() {
-		// A set to contain all session numbers (ensure no duplicates).
-		Set<Integer> sessionSet = new HashSet<Integer>();
-		// Add each session to the session set (removes duplicates).
-		for (Event event : lineUp) {
-			sessionSet.add(event.getSession());
-		}
 		sessionList = new ArrayList<String>();
-		sessionList.add("All sessions");
-		// For each session, add to the session model.
-		for (Integer session : sessionSet) {
+		sessionList.add(ALL_SESSIONS);
+		// For each session in the line up (in order), add to the session model.
+		for (Integer session : lineUp.getSessionCounts().keySet()) {
 			sessionList.add("" + session);
 		}
 	}
 
 	/**
-	 * A method which removes an event from the dayPlanModel.
+	 * Returns true if the event is in the session shown by the line up model.
+	 * 
+	 * @require event is not null.
+	 * @ensure return true if the event belongs in the line up model.
+	 */
+	private boolean isSelected(Event event) {
+		return ALL_SESSIONS.equals(selectedSession)
+				|| selectedSession.equals("" + event.getSession());
+	}
+
+	/**
+	 * Adds a session that has just gained its first event to the session
+	 * list, keeping the sessions in order.
+	 * 
+	 * @require sessionList is populated && session is not in sessionList.
+	 * @ensure session is in sessionList, after "All sessions" and in
+	 *         ascending order.
+	 */
+	private void addSession(int session) {
+		// The position to insert the session at, after any smaller session.
+		int position = 1;
+		while (position < sessionList.size()
+				&& Integer.parseInt(sessionList.get(position)) < session) {
+			position++;
+		}
+		sessionList.add(position, "" + session);
+	}
+
+	/**
+	 * A method which removes an event from the dayPlan.
 	 *
-	 * @require dayPlanModel && intermediatePlan are not null.
-	 * @ensure event will be removed from the dayPlanModel.
+	 * @require dayPlan is not null.
+	 * @ensure event will be removed from the dayPlan.
 	 * @param event
-	 *            - the event that is to be removed from the dayPlanModel.
+	 *            - the event that is to be removed from the dayPlan.
 	 */
 	public void removeFromDayPlan(Event event) {
-		// Remove the event from both the intermediate plan & the model.
-		dayPlanModel.remove(event);
-		intermediatePlan.remove(event);
+		dayPlan.remove(event.getSession(), event);
 	}
 
 	/**
-	 * A method which adds an event to the dayPlanModel
+	 * A method which adds an event to the dayPlan
 	 * 
-	 * @require dayPlanModel is not null.
-	 * @ensure the event will be added to the dayPlanModel.
+	 * @require dayPlan is not null && !isNotUniqueSession(event).
+	 * @ensure the event will be added to the dayPlan.
 	 * @param event
-	 *            - The event that is to be added to the dayPlanModel.
+	 *            - The event that is to be added to the dayPlan.
 	 */
 	public void addToDayPlan(Event event) {
-		dayPlanModel.add(event);
-		Collections.sort(dayPlanModel, new sessionComparator());
+		dayPlan.put(event.getSession(), event);
 	}
 
 	/**
 	 * Checks if the day plan already contains an event.
 	 * 
-	 * @require dayPlanModel is not null.
+	 * @require dayPlan is not null.
 	 * @ensure Return true if event is in the day plan, else, return false.
 	 * @param event
 	 *            - the event to be checked.
 	 * @return true if the current day plan contains the event, false otherwise.
 	 */
 	public boolean containsEvent(Event event) {
-		// If dayPlanModel contains event, return true.
-		if (dayPlanModel.contains(event)) {
-			return true;
-		}
-		return false;
+		// The only event in the plan that could equal event is in its session.
+		return event.equals(dayPlan.get(event.getSession()));
 	}
 
 	/**
 	 * Checks whether an event with the same session already resides in the day
 	 * plan
 	 * 
-	 * @require dayPlanModel is not null.
+	 * @require dayPlan is not null.
 	 * @ensure return true if there already exists an event with the same
 	 *         session number in the day plan, false otherwise.
 	 * 
@@ -238,88 +401,50 @@ public class PlannerModel {
 	 *         number in the day plan, false otherwiese.
 	 */
 	public boolean isNotUniqueSession(Event event) {
-		for (int i = 0; i < dayPlanModel.size(); i++) {
-			// The day plan model cannot contain an event with two same session
-			// numbers.
-			if (event.getSession() == dayPlanModel.get(i).getSession()) {
-				return true;
-			}
-		}
-		return false;
+		return dayPlan.containsKey(event.getSession());
 	}
 
 	/**
 	 * Checks if the event being added to the day plan can be reached by the
 	 * previous event.
 	 * 
-	 * @require intermediatePlan && event && dayPlanner are not null.
-	 * @ensure that if the event can be reached by the previous event, return
-	 *         true, otherwise, return false.
+	 * @require dayPlan && event && timetable are not null.
+	 * @ensure that if the event can be reached by the previous event in the
+	 *         day plan (by session number), return true, otherwise, return
+	 *         false.
 	 * @param event
 	 *            - The event being reached by the previous event.
 	 * @return true if can be reached, otherwise, return false.
 	 */
 	public boolean canReachPrevious(Event event) {
-		Collections.sort(intermediatePlan, new sessionComparator());
-		int eventIndex = intermediatePlan.indexOf(event);
-		// If there are no events in the day plan, then it's suitable to add the
-		// selected event, or if the previous can reach the selected event.
-		if (eventIndex == 0
-				|| dayPlanner.canReach(intermediatePlan.get(eventIndex - 1),
-						intermediatePlan.get(eventIndex))) {
-			return true;
-			// The pervious event cannot reach the selected event.
-		} else {
-			intermediatePlan.remove(event);
-			return false;
-		}
+		// The last event in the day plan before the session of event.
+		Map.Entry<Integer, Event> previous =
+				dayPlan.lowerEntry(event.getSession());
+		// If there are no earlier events in the day plan, then it's suitable to
+		// add the selected event, or if the previous can reach the selected
+		// event.
+		return previous == null
+				|| getDayPlanner().canReach(previous.getValue(), event);
 	}
 
 	/**
 	 * Checks if the event being added to the day plan can the next event in the
 	 * day plan.
 	 * 
-	 * @require intermediatePlan && event && dayPlanner are not null.
-	 * @ensure That if the event can reach the next event in the day plan,
-	 *         return true, otherwise return false.
+	 * @require dayPlan && event && timetable are not null.
+	 * @ensure That if the event can reach the next event in the day plan (by
+	 *         session number), return true, otherwise return false.
 	 * @param event
 	 *            - The event reaching the next event.
 	 * @return true if can reach next event, otherwise, return false.
 	 */
 	public boolean canReachNext(Event event) {
-		Collections.sort(intermediatePlan, new sessionComparator());
-		// The index of the event being added to the list.
-		int eventIndex = intermediatePlan.indexOf(event);
-		// There is nothing in the list, or the event being added can reach the
-		// next event.
-		if (intermediatePlan.size() - 1 == eventIndex
-				|| dayPlanner.canReach(intermediatePlan.get(eventIndex),
-						intermediatePlan.get(eventIndex + 1))) {
-			return true;
-			// The selected event cannot reach the next event - remove it from
-			// the day plan.
-		} else {
-			intermediatePlan.remove(event);
-			return false;
-		}
-	}
-
-	/**
-	 * A comparator, which imposes a total ordering on a collection of events.
-	 */
-	private class sessionComparator implements Comparator<Event> {
-		/**
-		 * A compare method, which imposes a total ordering on the session
-		 * number of an event (from lowest to highest).
-		 * 
-		 * @require event1 && event2 are not null.
-		 * @ensure event1 and event2 will be ordered by session number.
-		 */
-		@Override
-		public int compare(Event event1, Event event2) {
-			// Compare two events on session number.
-			return new Integer(event1.getSession()).compareTo(event2
-					.getSession());
-		}
+		// The first event in the day plan after the session of event.
+		Map.Entry<Integer, Event> next =
+				dayPlan.higherEntry(event.getSession());
+		// There are no later events in the day plan, or the event being added
+		// can reach the next event.
+		return next == null
+				|| getDayPlanner().canReach(event, next.getValue());
 	}
 }
@@ -0,0 +1,22 @@
+package festival;
+
+/**
+ * Runs every test of the festival core, stopping at the first failure.
+ */
+public class AllTests {
+
+	/**
+	 * Runs every test class in turn.
+	 */
+	public static void main(String[] args) throws Exception {
+		DayPlannerTest.main(args);
+		LineUpTest.main(args);
+		FestivalSnapshotTest.main(args);
+		FrozenTimetableTest.main(args);
+		CompactLineUpTest.main(args);
+		ConcurrentLineUpTest.main(args);
+		LineUpReaderTest.main(args);
+		ScheduleReaderTest.main(args);
+	}
+
+}
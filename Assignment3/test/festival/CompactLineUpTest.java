@@ -0,0 +1,125 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Tests of CompactLineUp, comparing it against a LineUp given the same random
+ * sequences of changes.
+ * </p>
+ */
+public class CompactLineUpTest {
+
+	// the number of small random line-ups to test on
+	private static final int LINE_UPS = 200;
+	// the number of changes to make to the large random line-up
+	private static final int CHANGES = 20000;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(6);
+		for (int i = 0; i < LINE_UPS; i++) {
+			testChanges(random, 1 + random.nextInt(8), 1 + random.nextInt(8),
+					150, 3, true);
+		}
+		// enough slots that the slot table grows, and then thins out through
+		// removals that shift runs of entries back, and acts are rarely shared
+		testChanges(random, 40, 40, CHANGES, CHANGES, false);
+		System.out.println("CompactLineUpTest: OK");
+	}
+
+	/**
+	 * Checks a compact line-up against a line-up over a random sequence of
+	 * additions and removals among the given numbers of venues, sessions and
+	 * acts: after every change if every is true, and after every thousand
+	 * changes otherwise.
+	 */
+	private static void testChanges(Random random, int venues, int sessions,
+			int changes, int acts, boolean every) {
+		LineUp lineUp = new LineUp();
+		CompactLineUp compact = new CompactLineUp();
+		for (int i = 0; i < changes; i++) {
+			// the event to add or remove, removing more often later on
+			Event event = new Event(LineUpTest.venue(random.nextInt(venues)),
+					1 + random.nextInt(sessions), "act" + random.nextInt(acts));
+			if (random.nextInt(changes) < i) {
+				// the event itself, or the one in its slot (if any)
+				Event removed = random.nextBoolean() ? event : lineUp
+						.getEvent(event.getVenue(), event.getSession());
+				lineUp.removeEvent(removed);
+				compact.removeEvent(removed);
+			} else {
+				// whether the line-up rejects the event as a clash
+				boolean clash = false;
+				try {
+					lineUp.addEvent(event);
+				} catch (InvalidLineUpException e) {
+					clash = true;
+				}
+				try {
+					compact.addEvent(event);
+					check(!clash, "clash not detected");
+				} catch (InvalidLineUpException e) {
+					check(clash, "clash detected wrongly");
+				}
+			}
+			if (every || i % 1000 == 0 || i == changes - 1) {
+				compare(compact, lineUp, venues, sessions);
+			}
+		}
+	}
+
+	/**
+	 * Checks that every query of the compact line-up answers as the line-up
+	 * does, among the given number of venues and sessions.
+	 */
+	private static void compare(CompactLineUp compact, LineUp lineUp,
+			int venues, int sessions) {
+		check(compact.checkInvariant(), "invariant failed");
+		// the events of each line-up
+		Set<Event> expected = new HashSet<>();
+		for (Event event : lineUp) {
+			expected.add(event);
+		}
+		Set<Event> actual = new HashSet<>();
+		for (Event event : compact) {
+			actual.add(event);
+		}
+		check(actual.equals(expected), "events differ");
+		check(compact.size() == expected.size(), "sizes differ");
+		check(compact.toString().equals(lineUp.toString()), "strings differ");
+		check(compact.toLineUp().toString().equals(lineUp.toString()),
+				"copied line-up differs");
+		check(compact.getVenues().equals(lineUp.getVenues()),
+				"venues differ");
+		check(compact.getFirstUsedSession() == lineUp.getFirstUsedSession(),
+				"first session differs");
+		check(compact.getLastUsedSession() == lineUp.getLastUsedSession(),
+				"last session differs");
+		for (int session = 1; session <= sessions + 1; session++) {
+			check(compact.getEvents(session).equals(lineUp.getEvents(
+					session)), "events of session differ");
+		}
+		for (int v = 0; v <= venues; v++) {
+			// a venue, or one more than can be used
+			Venue venue = LineUpTest.venue(v);
+			check(compact.getEvents(venue).equals(lineUp.getEvents(venue)),
+					"events of venue differ");
+			for (int session = 1; session <= sessions + 1; session++) {
+				check(Objects.equals(compact.getEvent(venue, session), lineUp
+						.getEvent(venue, session)), "event differs");
+			}
+		}
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
@@ -0,0 +1,198 @@
+package festival;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * Tests of ConcurrentLineUp, comparing it against a LineUp given the same
+ * random sequences of changes, and checking that readers on other threads
+ * only ever see whole, consistent snapshots.
+ * </p>
+ */
+public class ConcurrentLineUpTest {
+
+	// the number of small random line-ups to test on
+	private static final int LINE_UPS = 200;
+	// the number of changes made while readers are running
+	private static final int CHANGES = 20000;
+	// the number of reader threads
+	private static final int READERS = 3;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		Random random = new Random(7);
+		for (int i = 0; i < LINE_UPS; i++) {
+			testChanges(random, 1 + random.nextInt(6), 1 + random.nextInt(6));
+		}
+		testReaders(new Random(8));
+		System.out.println("ConcurrentLineUpTest: OK");
+	}
+
+	/**
+	 * Checks a concurrent line-up against a line-up after each of a random
+	 * sequence of additions, batches and removals, and checks that a snapshot
+	 * taken before each change is not affected by it.
+	 */
+	private static void testChanges(Random random, int venues, int sessions) {
+		LineUp lineUp = new LineUp();
+		ConcurrentLineUp concurrent = new ConcurrentLineUp();
+		for (int i = 0; i < 60; i++) {
+			// the state before the change, and its string representation
+			LineUpSnapshot before = concurrent.snapshot();
+			String string = before.toString();
+			// whether the line-up rejects the change
+			boolean rejected = false;
+			if (random.nextInt(3) == 0) {
+				// the event to remove
+				Event event = LineUpTest.randomEvent(random, venues, sessions);
+				lineUp.removeEvent(event);
+				concurrent.removeEvent(event);
+			} else {
+				// the events to add, one at a time or as a batch
+				List<Event> batch = new ArrayList<>();
+				for (int j = random.nextInt(3); j >= 0; j--) {
+					batch.add(LineUpTest.randomEvent(random, venues,
+							sessions));
+				}
+				try {
+					lineUp.addAll(batch);
+				} catch (InvalidLineUpException e) {
+					rejected = true;
+				}
+				try {
+					if (batch.size() == 1) {
+						concurrent.addEvent(batch.get(0));
+					} else {
+						concurrent.addAll(batch);
+					}
+					check(!rejected, "clash not detected");
+				} catch (InvalidLineUpException e) {
+					check(rejected, "clash detected wrongly");
+				}
+			}
+			check(before.toString().equals(string), "snapshot changed");
+			compare(concurrent, lineUp, venues, sessions);
+		}
+		check(new ConcurrentLineUp(lineUp).snapshot().toString().equals(
+				lineUp.toString()), "copied line-up differs");
+	}
+
+	/**
+	 * Checks that every query of the current snapshot of the concurrent
+	 * line-up answers as the line-up does, among the given number of venues
+	 * and sessions.
+	 */
+	private static void compare(ConcurrentLineUp concurrent, LineUp lineUp,
+			int venues, int sessions) {
+		// the current state of the concurrent line-up
+		LineUpSnapshot snapshot = concurrent.snapshot();
+		check(snapshot.checkInvariant(), "invariant failed");
+		// the events of each line-up, in order
+		List<Event> expected = new ArrayList<>();
+		for (Event event : lineUp) {
+			expected.add(event);
+		}
+		List<Event> actual = new ArrayList<>();
+		for (Event event : snapshot) {
+			actual.add(event);
+		}
+		check(actual.equals(expected), "events differ");
+		check(snapshot.size() == expected.size(), "sizes differ");
+		check(snapshot.toString().equals(lineUp.toString()),
+				"strings differ");
+		check(snapshot.getVenues().equals(lineUp.getVenues()),
+				"venues differ");
+		check(snapshot.getFirstUsedSession() == lineUp.getFirstUsedSession(),
+				"first session differs");
+		check(snapshot.getLastUsedSession() == lineUp.getLastUsedSession(),
+				"last session differs");
+		for (int session = 1; session <= sessions + 1; session++) {
+			check(snapshot.getEvents(session).equals(lineUp.getEvents(
+					session)), "events of session differ");
+		}
+		for (int v = 0; v <= venues; v++) {
+			// a venue, or one more than can be used
+			Venue venue = LineUpTest.venue(v);
+			check(snapshot.getEvents(venue).equals(lineUp.getEvents(venue)),
+					"events of venue differ");
+			for (int session = 1; session <= sessions + 1; session++) {
+				check(snapshot.getEvent(venue, session) == lineUp.getEvent(
+						venue, session), "event differs");
+			}
+		}
+	}
+
+	/**
+	 * Checks that readers taking snapshots while a writer adds and removes
+	 * events (singly, and in pairs that are always added together) only see
+	 * consistent snapshots, and never half of a pair.
+	 */
+	private static void testReaders(Random random)
+			throws InterruptedException {
+		ConcurrentLineUp concurrent = new ConcurrentLineUp();
+		// whether the writer has finished
+		AtomicBoolean done = new AtomicBoolean();
+		// the first failure seen by a reader, if any
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < READERS; i++) {
+			Thread reader = new Thread(() -> {
+				try {
+					while (!done.get()) {
+						// the state of the line-up being read
+						LineUpSnapshot snapshot = concurrent.snapshot();
+						check(snapshot.checkInvariant(), "invariant failed");
+						check(snapshot.getEvents(LineUpTest.venue(0)).size()
+								== snapshot.getEvents(LineUpTest.venue(1))
+										.size(), "half of a batch seen");
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		for (int i = 0; i < CHANGES; i++) {
+			// a new session every few changes, and a pair of events in it
+			int session = 1 + i / 10;
+			Event first = new Event(LineUpTest.venue(0), session, "a");
+			Event second = new Event(LineUpTest.venue(1), session, "b");
+			if (concurrent.getEvent(first.getVenue(), session) == null) {
+				concurrent.addAll(Arrays.asList(first, second));
+			} else {
+				concurrent.addAll(Collections.<Event> emptyList());
+			}
+			// an unpaired event at another venue, added or removed
+			Event other = LineUpTest.randomEvent(random, 10, 20);
+			if (!other.getVenue().equals(first.getVenue())
+					&& !other.getVenue().equals(second.getVenue())) {
+				if (concurrent.getEvent(other.getVenue(), other
+						.getSession()) == null) {
+					concurrent.addEvent(other);
+				} else {
+					concurrent.removeEvent(concurrent.getEvent(other
+							.getVenue(), other.getSession()));
+				}
+			}
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		check(failure.get() == null, "reader failed: " + failure.get());
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
@@ -0,0 +1,366 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Randomised tests of DayPlanner, comparing its answers on many small random
+ * festivals against a direct search of every (venue, session) state.
+ * </p>
+ */
+public class DayPlannerTest {
+
+	// the number of random festivals to test on
+	private static final int FESTIVALS = 1000;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(1);
+		for (int i = 0; i < FESTIVALS; i++) {
+			// the size of the festival
+			int venueCount = 2 + random.nextInt(5);
+			int sessions = 1 + random.nextInt(8);
+			ShuttleTimetable timetable = randomTimetable(random, venueCount,
+					sessions, random.nextInt(4 * venueCount * sessions));
+			testItineraries(timetable, venueCount, sessions);
+			testCanReach(random, new DayPlanner(timetable), timetable,
+					venueCount, sessions);
+			testCanReach(random, new DayPlanner(timetable, true), timetable,
+					venueCount, sessions);
+			testCompatible(random, new DayPlanner(timetable, true),
+					timetable, venueCount, sessions);
+		}
+		for (int i = 0; i < FESTIVALS / 4; i++) {
+			// the size of the festival
+			int venueCount = 2 + random.nextInt(4);
+			int sessions = 1 + random.nextInt(6);
+			ShuttleTimetable timetable = randomTimetable(random, venueCount,
+					sessions, random.nextInt(2 * venueCount * sessions));
+			testOptimalPlan(random, timetable, venueCount, sessions);
+		}
+		testManyVenues();
+		System.out.println("DayPlannerTest: OK");
+	}
+
+	/**
+	 * Checks getItinerary between every pair of (venue, session) states of a
+	 * festival against the fewest services found by a direct search.
+	 */
+	private static void testItineraries(ShuttleTimetable timetable,
+			int venueCount, int sessions) {
+		DayPlanner planner = new DayPlanner(timetable);
+		for (int u = 0; u < venueCount; u++) {
+			for (int s = 1; s <= sessions; s++) {
+				for (int v = 0; v < venueCount; v++) {
+					for (int t = 1; t <= sessions + 1; t++) {
+						// the source and destination events
+						Event source = new Event(venue(u), s, "a");
+						Event destination = new Event(venue(v), t, "b");
+						// the fewest services needed, or -1
+						int expected = fewestServices(timetable, venue(u), s,
+								venue(v), t);
+						List<Service> itinerary = planner.getItinerary(source,
+								destination);
+						if (expected < 0) {
+							check(itinerary == null, "unexpected itinerary");
+						} else {
+							check(itinerary != null, "missing itinerary");
+							check(itinerary.size() == expected,
+									"itinerary is not the shortest");
+							checkItinerary(timetable, itinerary, source,
+									destination);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks canReach between every pair of (venue, session) states of a
+	 * festival, in a random order and each twice (so that the second answer
+	 * may come from a memoized search), against a direct search.
+	 */
+	private static void testCanReach(Random random, DayPlanner planner,
+			ShuttleTimetable timetable, int venueCount, int sessions) {
+		// the number of states of the festival, including one session after
+		int states = venueCount * (sessions + 1);
+		// each ordered pair of states, twice, as a source and a destination
+		List<int[]> queries = new ArrayList<>();
+		for (int source = 0; source < states; source++) {
+			for (int destination = 0; destination < states; destination++) {
+				queries.add(new int[] { source, destination });
+				queries.add(new int[] { source, destination });
+			}
+		}
+		Collections.shuffle(queries, random);
+		for (int[] query : queries) {
+			// the venues and sessions of the source and destination
+			int u = query[0] % venueCount;
+			int s = 1 + query[0] / venueCount;
+			int v = query[1] % venueCount;
+			int t = 1 + query[1] / venueCount;
+			check(planner.canReach(new Event(venue(u), s, "a"), new Event(
+					venue(v), t, "b")) == (fewestServices(timetable, venue(u),
+					s, venue(v), t) >= 0), "wrong reachability");
+		}
+	}
+
+	/**
+	 * Checks compatible on random plans, each ordered by session, against
+	 * direct searches between their adjacent events.
+	 */
+	private static void testCompatible(Random random, DayPlanner planner,
+			ShuttleTimetable timetable, int venueCount, int sessions) {
+		for (int i = 0; i < 20; i++) {
+			// a random plan, ordered by session
+			List<Event> plan = new ArrayList<>();
+			for (int j = random.nextInt(5); j > 0; j--) {
+				plan.add(new Event(venue(random.nextInt(venueCount)),
+						1 + random.nextInt(sessions), "a" + j));
+			}
+			Collections.sort(plan, new Comparator<Event>() {
+				@Override
+				public int compare(Event a, Event b) {
+					return Integer.compare(a.getSession(), b.getSession());
+				}
+			});
+			// whether each event of the plan can reach the next
+			boolean expected = true;
+			for (int j = 1; j < plan.size(); j++) {
+				// adjacent events of the plan
+				Event previous = plan.get(j - 1);
+				Event next = plan.get(j);
+				expected &= previous.getSession() != next.getSession()
+						&& fewestServices(timetable, previous.getVenue(),
+								previous.getSession(), next.getVenue(), next
+										.getSession()) >= 0;
+			}
+			check(planner.compatible(plan) == expected, "wrong compatibility");
+		}
+	}
+
+	/**
+	 * Checks getOptimalPlan, with and without weights, on a random line-up of
+	 * up to ten events against the best of every plan made from a subset of
+	 * the events.
+	 */
+	private static void testOptimalPlan(Random random,
+			ShuttleTimetable timetable, int venueCount, int sessions) {
+		// a random line-up, and its events ordered by session
+		LineUp lineUp = new LineUp();
+		for (int i = random.nextInt(11); i > 0; i--) {
+			// an event with one of a few acts, so that acts are shared
+			Event event = new Event(venue(random.nextInt(venueCount + 1)),
+					1 + random.nextInt(sessions), "act" + random.nextInt(4));
+			if (lineUp.getEvent(event.getVenue(), event.getSession()) == null) {
+				lineUp.addEvent(event);
+			}
+		}
+		List<Event> events = new ArrayList<>();
+		for (int session = 1; session <= sessions; session++) {
+			events.addAll(lineUp.getEvents(session));
+		}
+		// random weights for some of the acts, some of them not positive
+		Map<String, Double> weights = new HashMap<>();
+		for (int act = 0; act < 4; act++) {
+			if (random.nextBoolean()) {
+				weights.put("act" + act, random.nextInt(7) - 2.0);
+			}
+		}
+		DayPlanner planner = new DayPlanner(timetable);
+		for (Map<String, Double> plannerWeights : Arrays.asList(null,
+				weights)) {
+			List<Event> plan = planner.getOptimalPlan(lineUp,
+					plannerWeights);
+			check(isPlan(timetable, plan), "optimal plan is not compatible");
+			for (Event event : plan) {
+				check(lineUp.getEvent(event.getVenue(), event.getSession())
+						== event, "optimal plan has an event not in line-up");
+				check(weight(plannerWeights, event) > 0,
+						"optimal plan has an event of no weight");
+			}
+			// the greatest weight of any plan of a subset of the events
+			double best = 0;
+			for (int subset = 0; subset < 1 << events.size(); subset++) {
+				// the plan made from the events in the subset
+				List<Event> candidate = new ArrayList<>();
+				for (int i = 0; i < events.size(); i++) {
+					if ((subset & 1 << i) != 0) {
+						candidate.add(events.get(i));
+					}
+				}
+				if (isPlan(timetable, candidate)) {
+					best = Math.max(best, weight(plannerWeights, candidate));
+				}
+			}
+			check(weight(plannerWeights, plan) == best,
+					"optimal plan is not the best");
+		}
+	}
+
+	/**
+	 * Returns true if the events, in order, are in increasing sessions and
+	 * each can reach the next, by a direct search.
+	 */
+	private static boolean isPlan(ShuttleTimetable timetable,
+			List<Event> plan) {
+		for (int i = 1; i < plan.size(); i++) {
+			// adjacent events of the plan
+			Event previous = plan.get(i - 1);
+			Event next = plan.get(i);
+			if (previous.getSession() >= next.getSession()
+					|| fewestServices(timetable, previous.getVenue(), previous
+							.getSession(), next.getVenue(), next
+							.getSession()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the total weight of the events of the plan, as getOptimalPlan
+	 * weighs them.
+	 */
+	private static double weight(Map<String, Double> weights,
+			List<Event> plan) {
+		// the total weight of the plan
+		double total = 0;
+		for (Event event : plan) {
+			total += weight(weights, event);
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the weight of the act of the event in weights, or 1 if weights
+	 * is null or does not contain the act.
+	 */
+	private static double weight(Map<String, Double> weights, Event event) {
+		return weights == null || !weights.containsKey(event.getAct()) ? 1
+				: weights.get(event.getAct());
+	}
+
+	/**
+	 * Checks that the itinerary is a chain of services of the timetable from
+	 * the source event to the destination event.
+	 */
+	private static void checkItinerary(ShuttleTimetable timetable,
+			List<Service> itinerary, Event source, Event destination) {
+		// the venue and the session that the festival-goer is at
+		Venue at = source.getVenue();
+		int session = source.getSession();
+		for (Service service : itinerary) {
+			check(timetable.hasService(service), "service not in timetable");
+			check(service.getSource().equals(at), "service not connected");
+			check(service.getSession() >= session, "service already left");
+			at = service.getDestination();
+			session = service.getSession() + 1;
+		}
+		check(at.equals(destination.getVenue()), "wrong final venue");
+		check(session <= destination.getSession(), "arrives too late");
+	}
+
+	/**
+	 * Checks that a timetable between two venues that were created after very
+	 * many other venues plans in space that depends only on its own venues.
+	 */
+	private static void testManyVenues() {
+		for (int i = 0; i < 200000; i++) {
+			new Venue("other venue " + i);
+		}
+		// the two venues of the timetable, created after all of the others
+		Venue first = new Venue("first of two");
+		Venue second = new Venue("second of two");
+		// a service between the venues at the end of each of many sessions
+		ShuttleTimetable timetable = new ShuttleTimetable();
+		for (int t = 1; t <= 4000; t++) {
+			timetable.addService(t % 2 == 0 ? new Service(first, second, t)
+					: new Service(second, first, t));
+		}
+		FrozenTimetable frozen = timetable.freeze();
+		check(frozen.getVenueCount() == 2, "unused venues are indexed");
+		DayPlanner planner = new DayPlanner(frozen, true);
+		// an itinerary across every session of the timetable
+		List<Service> itinerary = planner.getItinerary(new Event(first, 1,
+				"a"), new Event(second, 4001, "b"));
+		check(itinerary != null && itinerary.size() == 1,
+				"wrong itinerary across many sessions");
+		check(planner.canReach(new Event(second, 1, "a"), new Event(second,
+				4001, "b")), "cannot stay at a venue");
+		check(planner.getOptimalPlan(new LineUp()).isEmpty(),
+				"plan from an empty line-up");
+	}
+
+	/**
+	 * Returns the fewest services needed to get from the source venue at the
+	 * end of the source session to the destination venue by the destination
+	 * session, or -1 if it cannot be done, by a breadth-first search over
+	 * every (venue, session) state in between.
+	 */
+	static int fewestServices(ShuttleTimetable timetable, Venue source,
+			int sourceSession, Venue destination, int destinationSession) {
+		if (destinationSession < sourceSession) {
+			return -1;
+		}
+		// the fewest services needed to be at each venue in each session
+		Map<Venue, Integer> best = new HashMap<>();
+		best.put(source, 0);
+		for (int t = sourceSession; t < destinationSession; t++) {
+			// the fewest services needed to be at each venue in session t + 1
+			Map<Venue, Integer> next = new HashMap<>(best);
+			for (Map.Entry<Venue, Integer> entry : best.entrySet()) {
+				for (Venue venue : timetable.getDestinations(entry.getKey(),
+						t)) {
+					if (!next.containsKey(venue)
+							|| next.get(venue) > entry.getValue() + 1) {
+						next.put(venue, entry.getValue() + 1);
+					}
+				}
+			}
+			best = next;
+		}
+		return best.containsKey(destination) ? best.get(destination) : -1;
+	}
+
+	/**
+	 * Returns a random timetable between the venues venue(0) to
+	 * venue(venueCount - 1), with services at the end of sessions 1 to
+	 * sessions.
+	 */
+	static ShuttleTimetable randomTimetable(Random random, int venueCount,
+			int sessions, int services) {
+		ShuttleTimetable timetable = new ShuttleTimetable();
+		for (int i = 0; i < services; i++) {
+			// the source and destination of the service
+			int source = random.nextInt(venueCount);
+			int destination = random.nextInt(venueCount);
+			if (source != destination) {
+				timetable.addService(new Service(venue(source),
+						venue(destination), 1 + random.nextInt(sessions)));
+			}
+		}
+		return timetable;
+	}
+
+	/**
+	 * Returns the venue with the given number in the random festivals.
+	 */
+	static Venue venue(int number) {
+		return new Venue("v" + number);
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package festival;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * <p>
+ * Tests of FestivalSnapshot, writing and loading random festivals, and
+ * checking that damaged snapshot files are rejected.
+ * </p>
+ */
+public class FestivalSnapshotTest {
+
+	// the number of random festivals to test on
+	private static final int FESTIVALS = 300;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) throws IOException {
+		// the file that the snapshots are written to
+		File file = File.createTempFile("festival", ".snapshot");
+		try {
+			Random random = new Random(3);
+			for (int i = 0; i < FESTIVALS; i++) {
+				testFestival(random, file);
+			}
+			testDuplicateService(file);
+		} finally {
+			file.delete();
+		}
+		System.out.println("FestivalSnapshotTest: OK");
+	}
+
+	/**
+	 * Checks that a random festival is loaded from its snapshot unchanged,
+	 * and that damaged copies of the snapshot are rejected.
+	 */
+	private static void testFestival(Random random, File file)
+			throws IOException {
+		// the size of the festival
+		int venueCount = 2 + random.nextInt(6);
+		int sessions = 1 + random.nextInt(8);
+		LineUp lineUp = new LineUp();
+		for (int i = random.nextInt(60); i > 0; i--) {
+			// a random event, with a non-ASCII act
+			Event event = new Event(DayPlannerTest.venue(random.nextInt(
+					venueCount)), 1 + random.nextInt(sessions), "act \u00e9"
+					+ random.nextInt(5));
+			if (lineUp.getEvent(event.getVenue(), event.getSession()) == null) {
+				lineUp.addEvent(event);
+			}
+		}
+		ShuttleTimetable timetable = DayPlannerTest.randomTimetable(random,
+				venueCount, sessions, random.nextInt(60));
+		new FestivalSnapshot(lineUp, timetable).write(file.getPath());
+
+		FestivalSnapshot loaded = load(file);
+		check(loaded != null, "snapshot rejected");
+		check(events(loaded.getLineUp()).equals(events(lineUp)),
+				"events differ");
+		check(loaded.getLineUp().checkInvariant(), "line-up invariant");
+		check(services(loaded.getTimetable()).equals(services(timetable)),
+				"services differ");
+		check(loaded.getTimetable().checkInvariant(), "timetable invariant");
+		for (int v = 0; v < venueCount; v++) {
+			for (int s = 1; s <= sessions; s++) {
+				check(loaded.getTimetable().getDestinations(
+						DayPlannerTest.venue(v), s).equals(timetable
+						.getDestinations(DayPlannerTest.venue(v), s)),
+						"destinations differ");
+			}
+		}
+
+		// the bytes of the snapshot, and a damaged copy of them
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		byte[] damaged = bytes.clone();
+		damaged[random.nextInt(damaged.length)] ^= 1 << random.nextInt(8);
+		checkRejected(file, damaged, "flipped bit accepted");
+		checkRejected(file, Arrays.copyOf(bytes, random.nextInt(
+				bytes.length)), "truncated snapshot accepted");
+		checkRejected(file, Arrays.copyOf(bytes, bytes.length + 1),
+				"extended snapshot accepted");
+	}
+
+	/**
+	 * Checks that bulk adding services to a timetable ignores services that
+	 * are already in it, as adding them one at a time does.
+	 */
+	private static void testDuplicateService(File file) throws IOException {
+		ShuttleTimetable timetable = new ShuttleTimetable();
+		// a service, given twice
+		Service service = new Service(DayPlannerTest.venue(0), DayPlannerTest
+				.venue(1), 1);
+		timetable.addService(service);
+		timetable.addAll(Arrays.asList(service, service, new Service(
+				DayPlannerTest.venue(0), DayPlannerTest.venue(2), 1)));
+		check(timetable.size() == 2, "duplicate service added");
+		check(timetable.getDestinations(DayPlannerTest.venue(0), 1).size()
+				== 2, "destinations not merged");
+		check(timetable.checkInvariant(), "timetable invariant");
+		new FestivalSnapshot(new LineUp(), timetable).write(file.getPath());
+		check(load(file) != null, "snapshot rejected");
+	}
+
+	/**
+	 * Writes the bytes to the file and checks that they are not loaded.
+	 */
+	private static void checkRejected(File file, byte[] bytes, String message)
+			throws IOException {
+		Files.write(file.toPath(), bytes);
+		check(load(file) == null, message);
+	}
+
+	/**
+	 * Returns the snapshot loaded from the file, or null if it is rejected.
+	 */
+	private static FestivalSnapshot load(File file) throws IOException {
+		try {
+			return FestivalSnapshot.load(file.getPath());
+		} catch (FormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the events of the line-up, in line-up order.
+	 */
+	private static List<Event> events(LineUp lineUp) {
+		// the events of the line-up
+		List<Event> events = new ArrayList<>();
+		for (Event event : lineUp) {
+			events.add(event);
+		}
+		return events;
+	}
+
+	/**
+	 * Returns the set of services of the timetable.
+	 */
+	private static Set<Service> services(ShuttleTimetable timetable) {
+		// the services of the timetable
+		Set<Service> services = new HashSet<>();
+		for (Service service : timetable) {
+			services.add(service);
+		}
+		return services;
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
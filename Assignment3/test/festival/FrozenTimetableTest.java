@@ -0,0 +1,126 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Tests of FrozenTimetable, comparing each frozen copy of many small random
+ * timetables against the timetable it was frozen from.
+ * </p>
+ */
+public class FrozenTimetableTest {
+
+	// the number of random timetables to test on
+	private static final int TIMETABLES = 1000;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(4);
+		for (int i = 0; i < TIMETABLES; i++) {
+			// the size of the timetable
+			int venueCount = 2 + random.nextInt(6);
+			int sessions = 1 + random.nextInt(8);
+			ShuttleTimetable timetable = DayPlannerTest.randomTimetable(random,
+					venueCount, sessions, random.nextInt(4 * venueCount
+							* sessions));
+			testFreeze(timetable, venueCount, sessions);
+		}
+		System.out.println("FrozenTimetableTest: OK");
+	}
+
+	/**
+	 * Checks that the frozen copy of the timetable has the same services and
+	 * destinations as it, indexes exactly the venues it uses, and lists its
+	 * services in order.
+	 */
+	private static void testFreeze(ShuttleTimetable timetable,
+			int venueCount, int sessions) {
+		FrozenTimetable frozen = timetable.freeze();
+		check(frozen.checkInvariant(), "invariant failed");
+		check(frozen.size() == timetable.size(), "sizes differ");
+		// the venues used by the services of the timetable
+		Set<Venue> used = new HashSet<>();
+		for (Service service : timetable) {
+			used.add(service.getSource());
+			used.add(service.getDestination());
+		}
+		check(frozen.getVenueCount() == used.size(), "wrong venue count");
+		// one more venue and one more session than the timetable could use,
+		// to check that they are empty
+		for (int v = 0; v <= venueCount; v++) {
+			// the venue, and its index in the frozen copy
+			Venue venue = DayPlannerTest.venue(v);
+			int index = frozen.getVenueIndex(venue);
+			check(used.contains(venue) ? index >= 0
+					&& frozen.getVenue(index).equals(venue) : index < 0,
+					"wrong venue index");
+			for (int s = 1; s <= sessions + 1; s++) {
+				check(frozen.getDestinations(venue, s).equals(timetable
+						.getDestinations(venue, s)), "destinations differ");
+				for (int w = 0; w <= venueCount; w++) {
+					if (w != v) {
+						// a service that may or may not be in the timetable
+						Service service = new Service(venue, DayPlannerTest
+								.venue(w), s);
+						check(frozen.hasService(service) == timetable
+								.hasService(service), "services differ");
+					}
+				}
+			}
+		}
+
+		// the services of the frozen copy, in the order it lists them
+		List<Service> services = new ArrayList<>();
+		for (Service service : frozen) {
+			services.add(service);
+		}
+		check(new HashSet<>(services).equals(services(timetable)),
+				"iterated services differ");
+		for (int i = 1; i < services.size(); i++) {
+			check(compare(services.get(i - 1), services.get(i)) < 0,
+					"services out of order");
+		}
+		check(services(frozen.toShuttleTimetable()).equals(services(
+				timetable)), "thawed services differ");
+	}
+
+	/**
+	 * Compares services by source name, then session, then destination name.
+	 */
+	private static int compare(Service a, Service b) {
+		// the comparison of the sources, sessions, and destinations
+		int result = a.getSource().getName().compareTo(b.getSource()
+				.getName());
+		if (result == 0) {
+			result = Integer.compare(a.getSession(), b.getSession());
+		}
+		if (result == 0) {
+			result = a.getDestination().getName().compareTo(b
+					.getDestination().getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the set of services of the timetable.
+	 */
+	private static Set<Service> services(ShuttleTimetable timetable) {
+		// the services of the timetable
+		Set<Service> services = new HashSet<>();
+		for (Service service : timetable) {
+			services.add(service);
+		}
+		return services;
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
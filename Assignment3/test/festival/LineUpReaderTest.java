@@ -0,0 +1,263 @@
+package festival;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Tests of the other ways of reading a line-up in LineUpReader, comparing
+ * each against read on many randomly generated (and often invalid) files.
+ * </p>
+ */
+public class LineUpReaderTest {
+
+	// the number of random files to compare the readers on
+	private static final int FILES = 5000;
+	// the number of random files to compare the stream of events on
+	private static final int STREAMED_FILES = 1000;
+	// the number of large random files to compare the parallel reader on
+	private static final int LARGE_FILES = 40;
+	// the line terminators that the readers should accept
+	private static final String[] TERMINATORS = { "\n", "\r", "\r\n",
+			"\u2028", "\u2029", "\u0085" };
+	// fragments of lines, both valid and invalid
+	private static final String[] FRAGMENTS = { "act", "Act 1", "a_b", " ",
+			"  ", ":", ": session ", "session", "+", "-", "0", "7", "12",
+			"2147483647", "2147483648", "99999999999", " at ", "at", "V1",
+			"\t", "\u000B", "\f", "\u00a0", "x", "", "\r", "\n" };
+
+	/**
+	 * A way of reading a line-up from a file.
+	 */
+	private interface Reader {
+		LineUp read(String fileName) throws IOException, FormatException;
+	}
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) throws IOException {
+		// the file that the line-ups are written to
+		File file = File.createTempFile("lineUp", ".txt");
+		try {
+			testFast(new Random(9), file);
+			testParallel(new Random(11), file);
+			testStream(new Random(12), file);
+		} finally {
+			file.delete();
+		}
+		System.out.println("LineUpReaderTest: OK");
+	}
+
+	/**
+	 * Checks that readFast reads the same line-up as read from each of many
+	 * random files, or fails with the same message.
+	 */
+	private static void testFast(Random random, File file) throws IOException {
+		for (int i = 0; i < FILES; i++) {
+			// the text of the file
+			String text = randomText(random, i % 500 == 0);
+			write(file, text);
+			check(outcome(LineUpReader::read, file).equals(outcome(
+					LineUpReader::readFast, file)), "readers differ on "
+					+ text);
+		}
+	}
+
+	/**
+	 * Returns the text of a random file of up to a dozen lines, starting with
+	 * a line longer than the buffer of the fast reader if longLine is true.
+	 */
+	private static String randomText(Random random, boolean longLine) {
+		// the text of the file
+		StringBuilder text = new StringBuilder();
+		if (longLine) {
+			// a line longer than the buffer of the fast reader
+			text.append("x");
+			for (int j = 0; j < 8190 + random.nextInt(5); j++) {
+				text.append('y');
+			}
+			text.append(": session 1 at Q").append(terminator(random));
+		}
+		for (int lines = random.nextInt(12); lines > 0; lines--) {
+			text.append(randomLine(random));
+			if (lines > 1 || random.nextBoolean()) {
+				text.append(terminator(random));
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Checks that readParallel reads the same line-up as read and readFast
+	 * from an empty file and from each of many random files large enough to
+	 * be split into several chunks, or fails with the same message. Most of
+	 * the files have a clash or an incorrectly formatted line somewhere, and
+	 * some have more than one.
+	 */
+	private static void testParallel(Random random, File file)
+			throws IOException {
+		for (int i = 0; i <= LARGE_FILES; i++) {
+			// the text of the file, which is empty the first time
+			StringBuilder text = new StringBuilder();
+			// the number of lines of the file
+			int lines = i == 0 ? 0 : 5000 + random.nextInt(15000);
+			// the number of lines that clash or are invalid
+			int errors = random.nextInt(4);
+			for (int line = 0; line < lines; line++) {
+				if (random.nextInt(lines) < errors) {
+					// a random, possibly invalid, line
+					text.append(randomLine(random));
+				} else {
+					// a valid event at a venue and session no other line uses
+					text.append("Act ").append(line).append(": session ")
+							.append(1 + line / 500).append(" at V").append(
+									line % 500);
+				}
+				if (line < lines - 1 || random.nextBoolean()) {
+					text.append(terminator(random));
+				}
+			}
+			write(file, text.toString());
+			// the outcome of the sequential reader
+			String expected = outcome(LineUpReader::read, file);
+			check(outcome(LineUpReader::readFast, file).equals(expected),
+					"fast reader differs on large file " + i);
+			check(outcome(LineUpReader::readParallel, file).equals(expected),
+					"parallel reader differs on large file " + i);
+		}
+	}
+
+	/**
+	 * Checks that the stream of events of each of many random files, added
+	 * in order to a line-up, gives the same line-up as read, or fails with
+	 * the same message. Also checks that the stream is lazy, so a file can be
+	 * streamed up to (but not including) its first bad line.
+	 */
+	private static void testStream(Random random, File file)
+			throws IOException {
+		for (int i = 0; i < STREAMED_FILES; i++) {
+			// the text of the file
+			String text = randomText(random, i % 100 == 0);
+			write(file, text);
+			check(outcome(LineUpReader::read, file).equals(outcome(
+					LineUpReaderTest::readStream, file)), "stream differs on "
+					+ text);
+		}
+
+		write(file, "Act: session 1 at V1\nbad line\n");
+		try (Stream<Event> events = LineUpReader.stream(file.getPath())) {
+			check(events.limit(1).count() == 1, "first event not streamed");
+		}
+		try (Stream<Event> events = LineUpReader.stream(file.getPath())) {
+			events.count();
+			check(false, "bad line streamed");
+		} catch (UncheckedFormatException e) {
+			check(e.getCause().getMessage().startsWith("Line 2"),
+					"bad line reported wrongly");
+		}
+	}
+
+	/**
+	 * Reads a line-up from the stream of events of the file, as read would,
+	 * rejecting the first event that clashes with an earlier one.
+	 */
+	private static LineUp readStream(String fileName) throws IOException,
+			FormatException {
+		LineUp lineUp = new LineUp();// the line-up to be returned
+		int lineNumber = 0;// the number of the line being read
+		try (Stream<Event> events = LineUpReader.stream(fileName)) {
+			for (Iterator<Event> i = events.iterator(); i.hasNext();) {
+				Event event = i.next();
+				try {
+					lineUp.addEvent(event);
+					++lineNumber;
+				} catch (InvalidLineUpException e) {
+					throw new FormatException("Line " + (lineNumber + 1)
+							+ ": more than one event scheduled for"
+							+ " the same time and session");
+				}
+			}
+		} catch (UncheckedFormatException e) {
+			throw e.getCause();
+		}
+		return lineUp;
+	}
+
+	/**
+	 * Returns a random line, which is usually close to the format of an
+	 * event, and otherwise made of random fragments.
+	 */
+	private static String randomLine(Random random) {
+		if (random.nextInt(3) == 0) {
+			// a line made of random fragments
+			StringBuilder line = new StringBuilder();
+			for (int i = random.nextInt(6); i > 0; i--) {
+				line.append(fragment(random));
+			}
+			return line.toString();
+		}
+		// the parts of an event, some occasionally replaced by a fragment
+		String act = random.nextInt(10) == 0 ? "" : (random.nextBoolean()
+				? "Band " : "dj_") + random.nextInt(5);
+		String session = random.nextInt(10) == 0 ? fragment(random)
+				: (random.nextInt(5) == 0 ? "+" : "") + (random.nextInt(10) == 0
+						? "00" : "") + random.nextInt(6);
+		String venue = random.nextInt(10) == 0 ? fragment(random) : "V"
+				+ random.nextInt(4);
+		return act + ": session " + session + " at " + venue + (random
+				.nextInt(20) == 0 ? fragment(random) : "");
+	}
+
+	/**
+	 * Returns a random fragment of a line.
+	 */
+	private static String fragment(Random random) {
+		return FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+	}
+
+	/**
+	 * Returns a random line terminator.
+	 */
+	private static String terminator(Random random) {
+		return TERMINATORS[random.nextInt(TERMINATORS.length)];
+	}
+
+	/**
+	 * Returns a description of the result of reading the file: its events in
+	 * order if it is read, or the message of the FormatException if not.
+	 */
+	private static String outcome(Reader reader, File file)
+			throws IOException {
+		try {
+			// the events that were read, in order
+			StringBuilder events = new StringBuilder("read:");
+			for (Event event : reader.read(file.getPath())) {
+				events.append(' ').append(event);
+			}
+			return events.toString();
+		} catch (FormatException e) {
+			return "rejected: " + e.getMessage();
+		}
+	}
+
+	/**
+	 * Writes the text to the file, in the default character set (which the
+	 * readers read files in).
+	 */
+	private static void write(File file, String text) throws IOException {
+		try (Writer out = new FileWriter(file)) {
+			out.write(text);
+		}
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
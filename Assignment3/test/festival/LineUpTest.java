@@ -0,0 +1,278 @@
+package festival;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Tests of LineUp, comparing it against a plain list of its events, and
+ * checking its invariant (both in full and as it is tracked), over random
+ * sequences of changes.
+ * </p>
+ */
+public class LineUpTest {
+
+	// the number of random changes to make to each line-up
+	private static final int CHANGES = 20000;
+	// the number of small random line-ups to compare against lists
+	private static final int LINE_UPS = 200;
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(5);
+		for (int i = 0; i < LINE_UPS; i++) {
+			testAgainstList(random, 1 + random.nextInt(5), 1 + random
+					.nextInt(6));
+			testAddAll(random);
+		}
+		testTrackedInvariant(new Random(2));
+		testTrackedViolation();
+		System.out.println("LineUpTest: OK");
+	}
+
+	/**
+	 * Checks a line-up against a list of the events added to it, in order,
+	 * after each of a random sequence of additions and removals.
+	 */
+	private static void testAgainstList(Random random, int venues,
+			int sessions) {
+		LineUp lineUp = new LineUp();
+		// the events of the line-up, in the order they were added
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			Event event = randomEvent(random, venues, sessions);
+			if (random.nextInt(3) == 0) {
+				lineUp.removeEvent(event);
+				expected.remove(event);
+			} else {
+				// whether the event clashes with one in the line-up
+				boolean clash = find(expected, event.getVenue(), event
+						.getSession()) != null;
+				try {
+					lineUp.addEvent(event);
+					check(!clash, "clash not detected");
+					expected.add(event);
+				} catch (InvalidLineUpException e) {
+					check(clash, "clash detected wrongly");
+				}
+			}
+			check(lineUp.checkInvariant(), "invariant failed");
+			compare(lineUp, expected, venues, sessions);
+		}
+	}
+
+	/**
+	 * Checks that addAll, given a collection or a stream, adds a random batch
+	 * of events if none of them is null or clashes, and otherwise leaves the
+	 * line-up unchanged.
+	 */
+	private static void testAddAll(Random random) {
+		LineUp lineUp = new LineUp();
+		// the events of the line-up, in the order they were added
+		List<Event> expected = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			// a random batch, which may contain null or clashing events
+			List<Event> batch = new ArrayList<>();
+			for (int j = random.nextInt(6); j > 0; j--) {
+				batch.add(random.nextInt(40) == 0 ? null : randomEvent(random,
+						4, 6));
+			}
+			// the batch should be added if adding it one at a time would
+			List<Event> accepted = new ArrayList<>(expected);
+			for (Event event : batch) {
+				if (accepted != null && (event == null || find(accepted, event
+						.getVenue(), event.getSession()) != null)) {
+					accepted = null;
+				} else if (accepted != null) {
+					accepted.add(event);
+				}
+			}
+			try {
+				if (random.nextBoolean()) {
+					lineUp.addAll(batch);
+				} else {
+					lineUp.addAll(batch.stream());
+				}
+				check(accepted != null, "invalid batch added");
+				expected = accepted;
+			} catch (NullPointerException | InvalidLineUpException e) {
+				check(accepted == null, "valid batch rejected");
+			}
+			check(lineUp.checkInvariant(), "invariant failed");
+			compare(lineUp, expected, 4, 6);
+		}
+	}
+
+	/**
+	 * Checks that every query of the line-up answers as it should for a
+	 * line-up of the expected events, in order, among the given number of
+	 * venues and sessions.
+	 */
+	static void compare(LineUp lineUp, List<Event> expected, int venues,
+			int sessions) {
+		// the events of the line-up, in order
+		List<Event> actual = new ArrayList<>();
+		for (Event event : lineUp) {
+			actual.add(event);
+		}
+		check(actual.equals(expected), "events differ");
+		// the expected events, in their natural ordering
+		List<Event> sorted = new ArrayList<>(expected);
+		Collections.sort(sorted);
+		// the expected string representation of the line-up
+		StringBuilder string = new StringBuilder();
+		for (Event event : sorted) {
+			string.append(string.length() == 0 ? "" : System
+					.getProperty("line.separator")).append(event);
+		}
+		check(lineUp.toString().equals(string.toString()),
+				"strings differ");
+		// the expected venues, and used sessions with their counts
+		Set<Venue> used = new HashSet<>();
+		SortedMap<Integer, Integer> counts = new TreeMap<>();
+		for (Event event : expected) {
+			used.add(event.getVenue());
+			counts.put(event.getSession(), counts.containsKey(event
+					.getSession()) ? counts.get(event.getSession()) + 1 : 1);
+		}
+		check(lineUp.getVenues().equals(used), "venues differ");
+		check(lineUp.getSessionCounts().equals(counts), "counts differ");
+		check(lineUp.getFirstUsedSession() == (counts.isEmpty() ? 0
+				: counts.firstKey()), "first session differs");
+		check(lineUp.getLastUsedSession() == (counts.isEmpty() ? 0 : counts
+				.lastKey()), "last session differs");
+		// one more venue and session than can be used, to check they are empty
+		for (int session = 1; session <= sessions + 1; session++) {
+			check(lineUp.getEvents(session).equals(select(sorted, null,
+					session)), "events of session differ");
+			check(lineUp.getEventCount(session) == select(sorted, null,
+					session).size(), "session count differs");
+		}
+		for (int v = 0; v <= venues; v++) {
+			check(lineUp.getEvents(venue(v)).equals(select(sorted, venue(v),
+					0)), "events of venue differ");
+			for (int session = 1; session <= sessions + 1; session++) {
+				check(lineUp.getEvent(venue(v), session) == find(expected,
+						venue(v), session), "event differs");
+			}
+		}
+	}
+
+	/**
+	 * Returns the events, in order, that are at the venue (if it is not null)
+	 * and in the session (if it is not 0).
+	 */
+	private static List<Event> select(List<Event> events, Venue venue,
+			int session) {
+		// the selected events
+		List<Event> selected = new ArrayList<>();
+		for (Event event : events) {
+			if ((venue == null || event.getVenue().equals(venue))
+					&& (session == 0 || event.getSession() == session)) {
+				selected.add(event);
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Returns the event at the venue in the session, or null if there is none.
+	 */
+	private static Event find(List<Event> events, Venue venue, int session) {
+		// the events at the venue in the session
+		List<Event> found = select(events, venue, session);
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Checks that a tracked invariant stays true, and agrees with the full
+	 * check, over a random sequence of additions and removals.
+	 */
+	private static void testTrackedInvariant(Random random) {
+		LineUp lineUp = new LineUp();
+		lineUp.setInvariantTracked(true);
+		for (int i = 0; i < CHANGES; i++) {
+			// a random event among few enough slots that they often clash
+			Event event = randomEvent(random, 8, 16);
+			if (random.nextInt(3) == 0) {
+				lineUp.removeEvent(event);
+			} else if (lineUp.getEvent(event.getVenue(),
+					event.getSession()) == null) {
+				lineUp.addEvent(event);
+			}
+			check(lineUp.checkTrackedInvariant(), "tracked invariant failed");
+			if (i % 1000 == 0) {
+				check(lineUp.checkInvariant(), "invariant failed");
+			}
+		}
+		lineUp.setInvariantTracked(false);
+		check(lineUp.checkTrackedInvariant(), "untracked invariant failed");
+	}
+
+	/**
+	 * Checks that tracking detects an event that moves to a taken session
+	 * while it is being added, replacing the event already there.
+	 */
+	private static void testTrackedViolation() {
+		LineUp lineUp = new LineUp();
+		lineUp.addEvent(new Event(venue(0), 2, "first"));
+		lineUp.setInvariantTracked(true);
+		check(lineUp.checkTrackedInvariant(), "tracked invariant failed");
+		lineUp.addEvent(new MovingEvent(venue(0), 1, 2, "second"));
+		check(!lineUp.checkTrackedInvariant(), "violation not tracked");
+		check(!lineUp.checkInvariant(), "violation not found");
+	}
+
+	/**
+	 * An event that is in one session the first time it is asked, and in
+	 * another from then on.
+	 */
+	private static final class MovingEvent extends Event {
+
+		// the session of the event from the second time it is asked
+		private final int laterSession;
+		// whether the session of the event has been asked yet
+		private boolean asked;
+
+		private MovingEvent(Venue venue, int session, int laterSession,
+				String act) {
+			super(venue, session, act);
+			this.laterSession = laterSession;
+		}
+
+		@Override
+		public int getSession() {
+			if (asked) {
+				return laterSession;
+			}
+			asked = true;
+			return super.getSession();
+		}
+
+	}
+
+	/**
+	 * Returns a random event among the given number of venues and sessions.
+	 */
+	static Event randomEvent(Random random, int venues, int sessions) {
+		return new Event(venue(random.nextInt(venues)), 1 + random
+				.nextInt(sessions), "act" + random.nextInt(4));
+	}
+
+	/**
+	 * Returns the venue with the given number in the random line-ups.
+	 */
+	static Venue venue(int number) {
+		return DayPlannerTest.venue(number);
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}
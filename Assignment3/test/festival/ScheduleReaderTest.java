@@ -0,0 +1,201 @@
+package festival;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * <p>
+ * Tests of ScheduleReader, checking that its tokenizer splits lines as a
+ * Scanner does, that it reads back random timetables, and that it rejects
+ * damaged timetable files with a FormatException.
+ * </p>
+ */
+public class ScheduleReaderTest {
+
+	// the number of random lines, and of random timetables, to test on
+	private static final int LINES = 20000;
+	private static final int TIMETABLES = 1000;
+	// whitespace that may separate tokens (including some that is not ASCII)
+	private static final String[] WHITESPACE = { " ", "  ", "\t", "\u000B",
+			"\f", "\u001C", "\u3000", "\u00a0", "" };
+	// tokens that may or may not be read as ints
+	private static final String[] TOKENS = { "1", "2", "+1", "-1", "0", "01",
+			"1,000", "1,00", "0,001", ",1", "2147483647", "2147483648",
+			"-2147483648", "-2147483649", "00", "\u0662", "+", "-", "x",
+			"1a", "V1", "\uD835\uDFCF" };
+
+	/**
+	 * Runs every test, throwing an AssertionError at the first failure.
+	 */
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(10);
+		for (int i = 0; i < LINES; i++) {
+			testTokenizer(randomLine(random));
+		}
+		// the file that the timetables are written to
+		File file = File.createTempFile("timetable", ".txt");
+		try {
+			for (int i = 0; i < TIMETABLES; i++) {
+				testTimetable(random, file);
+			}
+		} finally {
+			file.delete();
+		}
+		System.out.println("ScheduleReaderTest: OK");
+	}
+
+	/**
+	 * Checks that a LineTokenizer splits the line into the same tokens as a
+	 * Scanner, and reads the same of them as ints, with the same values.
+	 */
+	private static void testTokenizer(String line) throws IOException {
+		Scanner expected = new Scanner(line);
+		LineTokenizer actual = new LineTokenizer(new LineSplitter(
+				new StringReader(line + "\n")));
+		check(actual.nextLine(), "line not read");
+		check(actual.isLineEmpty() == line.isEmpty(), "wrong emptiness");
+		while (expected.hasNext()) {
+			check(actual.hasNext(), "token missing from " + line);
+			check(actual.hasNextInt() == expected.hasNextInt(),
+					"ints differ on " + line);
+			if (expected.hasNextInt()) {
+				check(actual.nextInt() == expected.nextInt(),
+						"int values differ on " + line);
+			} else {
+				check(actual.next().equals(expected.next()),
+						"tokens differ on " + line);
+			}
+		}
+		check(!actual.hasNext(), "extra token on " + line);
+		check(!actual.nextLine(), "extra line");
+	}
+
+	/**
+	 * Returns a random line of tokens and whitespace.
+	 */
+	private static String randomLine(Random random) {
+		// the line under construction
+		StringBuilder line = new StringBuilder();
+		for (int i = random.nextInt(5); i > 0; i--) {
+			line.append(WHITESPACE[random.nextInt(WHITESPACE.length)]);
+			line.append(TOKENS[random.nextInt(TOKENS.length)]);
+		}
+		if (random.nextBoolean()) {
+			line.append(WHITESPACE[random.nextInt(WHITESPACE.length)]);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Checks that a random timetable written in the file format is read
+	 * back with the same services, and that a copy of the file with a line
+	 * removed or changed is rejected or read without any other exception.
+	 */
+	private static void testTimetable(Random random, File file)
+			throws IOException {
+		// the size of the timetable
+		int venueCount = 2 + random.nextInt(5);
+		int sessions = 1 + random.nextInt(6);
+		ShuttleTimetable timetable = DayPlannerTest.randomTimetable(random,
+				venueCount, sessions, random.nextInt(3 * venueCount
+						* sessions));
+		// the lines of the file describing the timetable
+		List<String> lines = new ArrayList<>();
+		lines.add(" " + sessions + " ");
+		for (int v = 0; v < venueCount; v++) {
+			// the venue whose services are described
+			Venue source = DayPlannerTest.venue(v);
+			if (v % 2 == 0 || services(timetable, source) > 0) {
+				lines.add(source + "\t");
+				for (int s = 1; s <= sessions; s++) {
+					// the line for the services from the source in session s
+					StringBuilder line = new StringBuilder(" " + s);
+					for (Venue destination : timetable.getDestinations(
+							source, s)) {
+						line.append(random.nextBoolean() ? " " : "\t  ")
+								.append(destination);
+					}
+					lines.add(line.toString());
+				}
+				lines.add("");
+			}
+		}
+		write(file, lines);
+		check(services(read(file)).equals(services(timetable)),
+				"timetable read wrongly");
+
+		// a copy of the file with a line removed or changed
+		List<String> damaged = new ArrayList<>(lines);
+		// the line to damage
+		int index = random.nextInt(damaged.size());
+		if (random.nextBoolean()) {
+			damaged.remove(index);
+		} else {
+			damaged.set(index, damaged.get(index) + " " + TOKENS[random
+					.nextInt(TOKENS.length)]);
+		}
+		write(file, damaged);
+		read(file);
+	}
+
+	/**
+	 * Returns the timetable read from the file, or null if it is rejected.
+	 */
+	private static ShuttleTimetable read(File file) throws IOException {
+		try {
+			return ScheduleReader.read(file.getPath());
+		} catch (FormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the number of services of the timetable from the source.
+	 */
+	private static int services(ShuttleTimetable timetable, Venue source) {
+		// the number of services from the source
+		int count = 0;
+		for (Service service : timetable) {
+			if (service.getSource().equals(source)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the set of services of the timetable, or null if it is null.
+	 */
+	private static Set<Service> services(ShuttleTimetable timetable) {
+		if (timetable == null) {
+			return null;
+		}
+		// the services of the timetable
+		Set<Service> services = new HashSet<>();
+		for (Service service : timetable) {
+			services.add(service);
+		}
+		return services;
+	}
+
+	/**
+	 * Writes the lines to the file, each followed by a line separator.
+	 */
+	private static void write(File file, List<String> lines)
+			throws IOException {
+		try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+			for (String line : lines) {
+				out.println(line);
+			}
+		}
+	}
+
+	/**
+	 * Throws an AssertionError with the given message if the condition is
+	 * false.
+	 */
+	private static void check(boolean condition, String message) {
+		DayPlannerTest.check(condition, message);
+	}
+
+}